@@ -0,0 +1,208 @@
+package example;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.protobuf.Empty;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache affinity harness comparing BackendPool balancers over loopback servers which each keep an LRU cache of the
+ * accounts they have looked up. A miss holds the response for the miss time while a hit answers immediately.
+ * Requests ask for uniformly random accounts from a key space larger than one server's cache but not than all of
+ * them, so only key-affine routing keeps the working set cached. Reports the cache hit ratio and latency
+ * percentiles. Run with:
+ * <pre>
+ *   mvn -Pjmh test-compile exec:exec@affinity [-Daffinity.keys=4000] [-Daffinity.cacheSize=1500]
+ * </pre>
+ */
+public class AffinityHarness {
+    public static void main(String[] args) throws Exception {
+        int backends = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int keys = args.length > 1 ? Integer.parseInt(args[1]) : 4000;
+        int cacheSize = args.length > 2 ? Integer.parseInt(args[2]) : 1500;
+        long missMillis = args.length > 3 ? Long.parseLong(args[3]) : 2;
+        int concurrency = args.length > 4 ? Integer.parseInt(args[4]) : 32;
+        long seconds = args.length > 5 ? Long.parseLong(args[5]) : 10;
+
+        ScheduledExecutorService delayer = Executors.newScheduledThreadPool(2);
+        List<ExampleServer> servers = new ArrayList<>();
+        List<AccountCache> caches = new ArrayList<>();
+        List<SocketAddress> addresses = new ArrayList<>();
+        try {
+            for (int i = 0; i < backends; i++) {
+                AccountCache cache = new AccountCache(delayer, cacheSize, missMillis);
+                ExampleServer server = ExampleServer.newBuilder(0).interceptors(cache).build();
+                server.startAsync().awaitRunning();
+                servers.add(server);
+                caches.add(cache);
+                addresses.add(new InetSocketAddress("localhost", server.port()));
+            }
+            for (BackendPool.Balancer balancer : BackendPool.Balancer.values()) {
+                ExampleClient.Builder builder = ExampleClient.newBuilder(addresses).balancer(balancer);
+                if (balancer == BackendPool.Balancer.consistentHash) {
+                    builder.consistentHash(request -> ((Example.GenerateErrorRequest) request).getMessage());
+                }
+                try (ExampleClient client = builder.build()) {
+                    measure(client, keys, concurrency, TimeUnit.SECONDS.toNanos(seconds) / 2);
+                    long hits = caches.stream().mapToLong(c -> c.hits.get()).sum();
+                    long lookups = caches.stream().mapToLong(c -> c.lookups.get()).sum();
+                    Histogram histogram = measure(client, keys, concurrency, TimeUnit.SECONDS.toNanos(seconds));
+                    hits = caches.stream().mapToLong(c -> c.hits.get()).sum() - hits;
+                    lookups = caches.stream().mapToLong(c -> c.lookups.get()).sum() - lookups;
+                    System.out.printf("{\"balancer\": \"%s\", \"calls\": %d, \"hitRatio\": %.3f, \"p50Micros\": %.1f, "
+                            + "\"p99Micros\": %.1f, \"p999Micros\": %.1f}%n",
+                        balancer, histogram.getTotalCount(), hits / (double) Math.max(1, lookups),
+                        histogram.getValueAtPercentile(50) / 1e3, histogram.getValueAtPercentile(99) / 1e3,
+                        histogram.getValueAtPercentile(99.9) / 1e3);
+                }
+                caches.forEach(AccountCache::clear);
+            }
+        } finally {
+            servers.forEach(s -> s.stopAsync().awaitTerminated());
+            delayer.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs concurrency chains of lookups for random accounts until the deadline.
+     */
+    private static Histogram measure(ExampleClient client, int keys, int concurrency, long durationNanos)
+        throws InterruptedException {
+        Histogram histogram = new ConcurrentHistogram(TimeUnit.SECONDS.toNanos(10), 3);
+        CountDownLatch done = new CountDownLatch(concurrency);
+        long deadline = System.nanoTime() + durationNanos;
+        for (int i = 0; i < concurrency; i++) {
+            next(client, keys, histogram, deadline, done);
+        }
+        done.await();
+        return histogram;
+    }
+
+    private static void next(ExampleClient client, int keys, Histogram histogram, long deadline,
+                             CountDownLatch done) {
+        if (System.nanoTime() >= deadline) {
+            done.countDown();
+            return;
+        }
+        ErrorStatus lookup = ErrorStatus.forCode(ErrorStatus.Code.accountNotFound)
+            .withMessage("account-" + ThreadLocalRandom.current().nextInt(keys));
+        long start = System.nanoTime();
+        Futures.addCallback(client.generateErrorFutureUnaryCall(lookup), new FutureCallback<Empty>() {
+            @Override
+            public void onSuccess(Empty result) {
+                complete();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                complete();
+            }
+
+            private void complete() {
+                histogram.recordValue(Math.min(System.nanoTime() - start, histogram.getHighestTrackableValue()));
+                next(client, keys, histogram, deadline, done);
+            }
+        });
+    }
+
+    /**
+     * LRU cache of the accounts a server has looked up, keyed by the request message. Responses to misses are held
+     * for the miss time.
+     */
+    private static final class AccountCache implements ServerInterceptor {
+        private final ScheduledExecutorService delayer;
+        private final long missMillis;
+        private final Map<String, Boolean> cache;
+        final AtomicLong lookups = new AtomicLong();
+        final AtomicLong hits = new AtomicLong();
+
+        AccountCache(ScheduledExecutorService delayer, int size, long missMillis) {
+            this.delayer = delayer;
+            this.missMillis = missMillis;
+            cache = new LinkedHashMap<String, Boolean>(size, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > size;
+                }
+            };
+        }
+
+        synchronized void clear() {
+            cache.clear();
+        }
+
+        private synchronized boolean lookup(String account) {
+            lookups.incrementAndGet();
+            if (cache.get(account) != null) {
+                hits.incrementAndGet();
+                return true;
+            }
+            cache.put(account, Boolean.TRUE);
+            return false;
+        }
+
+        @Override
+        public <ReqT, ResT> ServerCall.Listener<ReqT> interceptCall(
+            String method, ServerCall<ResT> call, Metadata.Headers headers, ServerCallHandler<ReqT, ResT> next) {
+            boolean[] hit = new boolean[1];
+            ServerCall.Listener<ReqT> listener = next.startCall(method,
+                new ForwardingServerCall.SimpleForwardingServerCall<ResT>(call) {
+                    @Override
+                    public void close(Status status, Metadata.Trailers trailers) {
+                        if (hit[0]) {
+                            super.close(status, trailers);
+                        } else {
+                            delayer.schedule(() -> super.close(status, trailers), missMillis, TimeUnit.MILLISECONDS);
+                        }
+                    }
+                }, headers);
+            return new ServerCall.Listener<ReqT>() {
+                @Override
+                public void onPayload(ReqT payload) {
+                    hit[0] = lookup(((Example.GenerateErrorRequest) payload).getMessage());
+                    listener.onPayload(payload);
+                }
+
+                @Override
+                public void onHalfClose() {
+                    listener.onHalfClose();
+                }
+
+                @Override
+                public void onCancel() {
+                    listener.onCancel();
+                }
+
+                @Override
+                public void onComplete() {
+                    listener.onComplete();
+                }
+
+                @Override
+                public void onReady() {
+                    listener.onReady();
+                }
+            };
+        }
+    }
+}
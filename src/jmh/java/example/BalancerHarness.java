@@ -0,0 +1,146 @@
+package example;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.protobuf.Empty;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tail latency harness comparing BackendPool balancers over heterogeneous loopback servers, each of which holds
+ * every response for its own service time. Reports latency percentiles and the share of calls each backend
+ * received. Run with:
+ * <pre>
+ *   mvn -Pjmh test-compile exec:exec@balancer [-Dbalancer.serviceMillis=1,1,1,20] [-Dbalancer.concurrency=32]
+ * </pre>
+ */
+public class BalancerHarness {
+    private static final ErrorStatus accountNotFound = ErrorStatus.forCode(ErrorStatus.Code.accountNotFound);
+
+    public static void main(String[] args) throws Exception {
+        String[] serviceMillis = (args.length > 0 ? args[0] : "1,1,1,20").split(",");
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        long seconds = args.length > 2 ? Long.parseLong(args[2]) : 10;
+
+        ScheduledExecutorService delayer = Executors.newScheduledThreadPool(2);
+        List<ExampleServer> servers = new ArrayList<>();
+        List<AtomicLong> received = new ArrayList<>();
+        List<SocketAddress> addresses = new ArrayList<>();
+        try {
+            for (String millis : serviceMillis) {
+                AtomicLong counter = new AtomicLong();
+                ExampleServer server = ExampleServer.newBuilder(0)
+                    .interceptors(new ServiceTime(delayer, counter, Long.parseLong(millis.trim())))
+                    .build();
+                server.startAsync().awaitRunning();
+                servers.add(server);
+                received.add(counter);
+                addresses.add(new InetSocketAddress("localhost", server.port()));
+            }
+            for (BackendPool.Balancer balancer : BackendPool.Balancer.values()) {
+                try (ExampleClient client = ExampleClient.newBuilder(addresses).balancer(balancer).build()) {
+                    measure(client, concurrency, TimeUnit.SECONDS.toNanos(seconds) / 2, new AtomicLong());
+                    long[] before = received.stream().mapToLong(AtomicLong::get).toArray();
+                    AtomicLong calls = new AtomicLong();
+                    Histogram histogram = measure(client, concurrency, TimeUnit.SECONDS.toNanos(seconds), calls);
+                    StringBuilder shares = new StringBuilder();
+                    for (int i = 0; i < received.size(); i++) {
+                        shares.append(i > 0 ? ", " : "").append(String.format("%.3f",
+                            (received.get(i).get() - before[i]) / (double) Math.max(1, calls.get())));
+                    }
+                    System.out.printf("{\"balancer\": \"%s\", \"calls\": %d, \"p50Micros\": %.1f, "
+                            + "\"p99Micros\": %.1f, \"p999Micros\": %.1f, \"shares\": [%s]}%n",
+                        balancer, calls.get(), histogram.getValueAtPercentile(50) / 1e3,
+                        histogram.getValueAtPercentile(99) / 1e3, histogram.getValueAtPercentile(99.9) / 1e3, shares);
+                }
+            }
+        } finally {
+            servers.forEach(s -> s.stopAsync().awaitTerminated());
+            delayer.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs concurrency chains of future calls until the deadline.
+     */
+    private static Histogram measure(ExampleClient client, int concurrency, long durationNanos, AtomicLong calls)
+        throws InterruptedException {
+        Histogram histogram = new ConcurrentHistogram(TimeUnit.SECONDS.toNanos(10), 3);
+        CountDownLatch done = new CountDownLatch(concurrency);
+        long deadline = System.nanoTime() + durationNanos;
+        for (int i = 0; i < concurrency; i++) {
+            next(client, histogram, calls, deadline, done);
+        }
+        done.await();
+        return histogram;
+    }
+
+    private static void next(ExampleClient client, Histogram histogram, AtomicLong calls, long deadline,
+                             CountDownLatch done) {
+        if (System.nanoTime() >= deadline) {
+            done.countDown();
+            return;
+        }
+        long start = System.nanoTime();
+        Futures.addCallback(client.generateErrorFutureUnaryCall(accountNotFound), new FutureCallback<Empty>() {
+            @Override
+            public void onSuccess(Empty result) {
+                complete();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                complete();
+            }
+
+            private void complete() {
+                histogram.recordValue(Math.min(System.nanoTime() - start, histogram.getHighestTrackableValue()));
+                calls.incrementAndGet();
+                next(client, histogram, calls, deadline, done);
+            }
+        });
+    }
+
+    /**
+     * Counts calls and holds each response for a fixed service time.
+     */
+    private static final class ServiceTime implements ServerInterceptor {
+        private final ScheduledExecutorService delayer;
+        private final AtomicLong received;
+        private final long millis;
+
+        ServiceTime(ScheduledExecutorService delayer, AtomicLong received, long millis) {
+            this.delayer = delayer;
+            this.received = received;
+            this.millis = millis;
+        }
+
+        @Override
+        public <ReqT, ResT> ServerCall.Listener<ReqT> interceptCall(
+            String method, ServerCall<ResT> call, Metadata.Headers headers, ServerCallHandler<ReqT, ResT> next) {
+            received.incrementAndGet();
+            return next.startCall(method, new ForwardingServerCall.SimpleForwardingServerCall<ResT>(call) {
+                @Override
+                public void close(Status status, Metadata.Trailers trailers) {
+                    delayer.schedule(() -> super.close(status, trailers), millis, TimeUnit.MILLISECONDS);
+                }
+            }, headers);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures blocking call throughput over loopback as the number of pooled channels grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(64)
+public class ChannelPoolBenchmark {
+    private static final ErrorStatus accountNotFound = ErrorStatus.forCode(ErrorStatus.Code.accountNotFound);
+
+    @Param({"1", "2", "4", "8"})
+    public int channels;
+
+    @Param({"roundRobin", "leastInFlight"})
+    public ChannelPool.Selection selection;
+
+    private ExampleServer server;
+    private ExampleClient client;
+
+    @Setup
+    public void setUp() {
+        server = ExampleServer.forPort(0);
+        server.startAsync().awaitRunning();
+        client = ExampleClient.newBuilder(new InetSocketAddress("localhost", server.port()))
+            .channels(channels, selection).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        server.stopAsync().awaitTerminated();
+    }
+
+    @Benchmark
+    public Object blockingUnaryCall() {
+        try {
+            client.generateErrorBlockingUnaryCall(accountNotFound);
+            return null;
+        } catch (ErrorException e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package example;
+
+import io.netty.channel.EventLoopGroup;
+import org.HdrHistogram.Histogram;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares NIO and native epoll client transports, each with a private event loop group per client and with one
+ * group shared by all clients. Reports threads and heap per client and blocking call latency over loopback. Run with:
+ * <pre>
+ *   mvn -Pjmh test-compile exec:exec@client-transport [-Dclients=100]
+ * </pre>
+ */
+public class ClientTransportHarness {
+    private static final int callsPerClient = 1_000;
+    private static final ErrorStatus accountNotFound = ErrorStatus.forCode(ErrorStatus.Code.accountNotFound);
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        ExampleServer server = ExampleServer.forPort(0);
+        server.startAsync().awaitRunning();
+        try {
+            for (boolean nativeTransport : new boolean[] {false, true}) {
+                for (boolean shared : new boolean[] {false, true}) {
+                    run(server.port(), clients, nativeTransport, shared);
+                }
+            }
+        } finally {
+            server.stopAsync().awaitTerminated();
+        }
+    }
+
+    private static void run(int port, int count, boolean nativeTransport, boolean shared) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+        long heap = memory.getHeapMemoryUsage().getUsed();
+
+        EventLoopGroup group = shared ? ExampleClient.newEventLoopGroup(0, nativeTransport) : null;
+        List<ExampleClient> clients = new ArrayList<>();
+        Histogram histogram = new Histogram(TimeUnit.SECONDS.toNanos(10), 3);
+        try {
+            for (int i = 0; i < count; i++) {
+                clients.add(ExampleClient.newBuilder(new InetSocketAddress("localhost", port))
+                    .nativeTransport(nativeTransport).eventLoopGroup(group).build());
+            }
+            // Connect every client before measuring footprint
+            for (ExampleClient client : clients) {
+                call(client, null);
+            }
+            System.gc();
+            int clientThreads = ManagementFactory.getThreadMXBean().getThreadCount() - threads;
+            long clientHeap = memory.getHeapMemoryUsage().getUsed() - heap;
+
+            for (int i = 0; i < callsPerClient; i++) {
+                for (ExampleClient client : clients) {
+                    call(client, histogram);
+                }
+            }
+            System.out.printf("{\"transport\": \"%s\", \"sharedGroup\": %b, \"clients\": %d, "
+                    + "\"threadsPerClient\": %.2f, \"heapBytesPerClient\": %d, \"p50Micros\": %.1f, "
+                    + "\"p99Micros\": %.1f}%n",
+                nativeTransport ? "epoll" : "nio", shared, count, (double) clientThreads / count, clientHeap / count,
+                histogram.getValueAtPercentile(50) / 1e3, histogram.getValueAtPercentile(99) / 1e3);
+        } finally {
+            clients.forEach(ExampleClient::close);
+            if (group != null) {
+                group.shutdownGracefully();
+            }
+        }
+    }
+
+    private static void call(ExampleClient client, Histogram histogram) {
+        long start = System.nanoTime();
+        try {
+            client.generateErrorBlockingUnaryCall(accountNotFound);
+        } catch (ErrorException e) {
+            // Expected, every call fails
+        }
+        if (histogram != null) {
+            histogram.recordValue(Math.min(System.nanoTime() - start, histogram.getHighestTrackableValue()));
+        }
+    }
+}
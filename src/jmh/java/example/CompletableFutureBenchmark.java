@@ -0,0 +1,73 @@
+package example;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.protobuf.Empty;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares CompletableFuture unary calls completed from the call listener with adapting the ListenableFuture unary
+ * call through a callback.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompletableFutureBenchmark {
+    private static final ErrorStatus accountNotFound = ErrorStatus.forCode(ErrorStatus.Code.accountNotFound);
+
+    private ExampleServer server;
+    private ExampleClient client;
+
+    @Setup
+    public void setUp() {
+        server = ExampleServer.forPort(0);
+        server.startAsync().awaitRunning();
+        client = ExampleClient.forAddress(new InetSocketAddress("localhost", server.port()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        server.stopAsync().awaitTerminated();
+    }
+
+    @Benchmark
+    public Object completableUnaryCall() {
+        return join(client.generateErrorCompletableUnaryCall(accountNotFound));
+    }
+
+    @Benchmark
+    public Object adaptedFutureUnaryCall() {
+        ListenableFuture<Empty> future = client.generateErrorFutureUnaryCall(accountNotFound);
+        CompletableFuture<Empty> completable = new CompletableFuture<>();
+        Futures.addCallback(future, new FutureCallback<Empty>() {
+            @Override
+            public void onSuccess(Empty result) {
+                completable.complete(result);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                completable.completeExceptionally(t);
+            }
+        });
+        return join(completable);
+    }
+
+    private static Object join(CompletableFuture<Empty> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            return e.getCause();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package example;
+
+import io.grpc.Status;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares ErrorException construction with and without stackless client errors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ErrorExceptionBenchmark {
+    private static final ErrorStatus accountNotFound = ErrorStatus.forCode(ErrorStatus.Code.accountNotFound);
+    private static final ErrorStatus accountNotFoundMessage = accountNotFound.withMessage("Account not found");
+    private static final ErrorStatus loginRequired = ErrorStatus.forCode(ErrorStatus.Code.loginRequired);
+
+    @Param({"false", "true"})
+    public boolean stackless;
+
+    @Setup
+    public void setUp() {
+        ErrorException.setStacklessClientErrors(stackless);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ErrorException.setStacklessClientErrors(false);
+    }
+
+    @Benchmark
+    public ErrorException clientError() {
+        return ErrorException.forErrorStatus(accountNotFound);
+    }
+
+    @Benchmark
+    public ErrorException clientErrorWithMessage() {
+        return ErrorException.forErrorStatus(accountNotFoundMessage);
+    }
+
+    @Benchmark
+    public ErrorException serverError() {
+        return ErrorException.forErrorStatus(loginRequired);
+    }
+
+    @Benchmark
+    public ErrorException fromThrowable() {
+        return ErrorException.fromThrowable(Status.NOT_FOUND.asRuntimeException());
+    }
+}
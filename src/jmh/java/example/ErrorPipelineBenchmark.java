@@ -0,0 +1,75 @@
+package example;
+
+import io.grpc.Status;
+import io.grpc.StatusException;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures the server side of the error pipeline: converting thrown exceptions with ErrorException.fromThrowable()
+ * and passing them to the response observer with Errors.handleError(). See ErrorStatusBenchmark and
+ * MarshallersBenchmark for the metadata encoding steps.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ErrorPipelineBenchmark {
+    @Param({"ErrorException", "StatusRuntimeException", "StatusException", "Throwable"})
+    public String input;
+
+    private Throwable error;
+    private StreamObserver<Object> observer;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        switch (input) {
+        case "ErrorException":
+            error = ErrorException.forErrorStatus(
+                ErrorStatus.forCode(ErrorStatus.Code.accountNotFound).withMessage("Account not found"));
+            break;
+        case "StatusRuntimeException":
+            error = new StatusRuntimeException(Status.NOT_FOUND);
+            break;
+        case "StatusException":
+            error = new StatusException(Status.NOT_FOUND);
+            break;
+        default:
+            error = new IllegalStateException("Broken");
+        }
+        observer = new StreamObserver<Object>() {
+            @Override
+            public void onValue(Object value) {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                blackhole.consume(t);
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        };
+        // Server errors are logged by handleError, which would otherwise dominate the measurement
+        Logger.getLogger(Logger.class.getName()).setLevel(Level.OFF);
+    }
+
+    @Benchmark
+    public ErrorException fromThrowable() {
+        return ErrorException.fromThrowable(error);
+    }
+
+    @Benchmark
+    public void handleError() {
+        Errors.handleError(error, observer);
+    }
+}
@@ -0,0 +1,54 @@
+package example;
+
+import io.grpc.Metadata;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encoding and decoding error information in the legacy and compact metadata encodings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ErrorStatusBenchmark {
+    @Param({"legacy", "compact"})
+    public ErrorStatus.Encoding encoding;
+
+    @Param({"", "Account not found"})
+    public String message;
+
+    private ErrorStatus status;
+    private byte[][] serialized;
+
+    @Setup
+    public void setUp() {
+        ErrorStatus.setEncoding(encoding);
+        status = ErrorStatus.forCode(ErrorStatus.Code.accountNotFound);
+        if (!message.isEmpty()) {
+            status = status.withMessage(message);
+        }
+        serialized = encode();
+    }
+
+    @TearDown
+    public void tearDown() {
+        ErrorStatus.setEncoding(ErrorStatus.Encoding.legacy);
+    }
+
+    @Benchmark
+    public byte[][] encode() {
+        Metadata.Trailers trailers = new Metadata.Trailers();
+        status.addHeaders(trailers);
+        return trailers.serialize();
+    }
+
+    @Benchmark
+    public Optional<ErrorStatus> decode() {
+        return ErrorStatus.fromMetadata(new Metadata.Trailers(serialized));
+    }
+}
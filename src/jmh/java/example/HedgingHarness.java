@@ -0,0 +1,158 @@
+package example;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.protobuf.Empty;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tail latency harness for HedgingPolicy against a server which delays a fraction of responses, comparing no
+ * hedging with a fixed and an adaptive p95 delay. Besides latency percentiles, reports the load cost as server
+ * attempts per call. Run with:
+ * <pre>
+ *   mvn -Pjmh test-compile exec:exec@hedging [-Dhedging.slowFraction=0.02] [-Dhedging.slowMillis=50]
+ * </pre>
+ */
+public class HedgingHarness {
+    private static final ErrorStatus accountNotFound =
+        ErrorStatus.forCode(ErrorStatus.Code.accountNotFound).withMessage("Account not found");
+
+    public static void main(String[] args) throws Exception {
+        double slowFraction = args.length > 0 ? Double.parseDouble(args[0]) : 0.02;
+        long slowMillis = args.length > 1 ? Long.parseLong(args[1]) : 50;
+        int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        long seconds = args.length > 3 ? Long.parseLong(args[3]) : 10;
+
+        ScheduledExecutorService delayer = Executors.newSingleThreadScheduledExecutor();
+        AtomicLong attempts = new AtomicLong();
+        ExampleServer server = ExampleServer.newBuilder(0)
+            .interceptors(new SlowInjector(delayer, attempts, slowFraction, slowMillis))
+            .build();
+        server.startAsync().awaitRunning();
+        InetSocketAddress address = new InetSocketAddress("localhost", server.port());
+        try {
+            run("none", ExampleClient.forAddress(address), attempts, concurrency, seconds);
+            run("fixed", ExampleClient.newBuilder(address)
+                .hedgingPolicy(HedgingPolicy.newBuilder().delay(5, TimeUnit.MILLISECONDS).build())
+                .build(), attempts, concurrency, seconds);
+            run("adaptiveP95", ExampleClient.newBuilder(address)
+                .hedgingPolicy(HedgingPolicy.newBuilder().build())
+                .build(), attempts, concurrency, seconds);
+        } finally {
+            server.stopAsync().awaitTerminated();
+            delayer.shutdownNow();
+        }
+    }
+
+    private static void run(String name, ExampleClient client, AtomicLong attempts, int concurrency, long seconds)
+        throws InterruptedException {
+        try {
+            // Warm up, which also lets the adaptive delay collect samples
+            measure(client, attempts, concurrency, TimeUnit.SECONDS.toNanos(seconds) / 2);
+            Histogram histogram = new ConcurrentHistogram(TimeUnit.SECONDS.toNanos(10), 3);
+            AtomicLong calls = new AtomicLong();
+            long attempted = measure(client, attempts, concurrency, TimeUnit.SECONDS.toNanos(seconds), histogram, calls);
+            System.out.printf("{\"hedging\": \"%s\", \"calls\": %d, \"p50Micros\": %.1f, \"p99Micros\": %.1f, "
+                    + "\"p999Micros\": %.1f, \"attemptsPerCall\": %.3f}%n",
+                name, calls.get(), histogram.getValueAtPercentile(50) / 1e3,
+                histogram.getValueAtPercentile(99) / 1e3, histogram.getValueAtPercentile(99.9) / 1e3,
+                (double) attempted / Math.max(1, calls.get()));
+        } finally {
+            client.close();
+        }
+    }
+
+    private static void measure(ExampleClient client, AtomicLong attempts, int concurrency, long durationNanos)
+        throws InterruptedException {
+        measure(client, attempts, concurrency, durationNanos,
+            new ConcurrentHistogram(TimeUnit.SECONDS.toNanos(10), 3), new AtomicLong());
+    }
+
+    /**
+     * Runs concurrency chains of future calls until the deadline, returning the server attempts made meanwhile.
+     */
+    private static long measure(ExampleClient client, AtomicLong attempts, int concurrency, long durationNanos,
+                                Histogram histogram, AtomicLong calls) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(concurrency);
+        long attempted = attempts.get();
+        long deadline = System.nanoTime() + durationNanos;
+        for (int i = 0; i < concurrency; i++) {
+            next(client, histogram, calls, deadline, done);
+        }
+        done.await();
+        return attempts.get() - attempted;
+    }
+
+    private static void next(ExampleClient client, Histogram histogram, AtomicLong calls, long deadline,
+                             CountDownLatch done) {
+        if (System.nanoTime() >= deadline) {
+            done.countDown();
+            return;
+        }
+        long start = System.nanoTime();
+        Futures.addCallback(client.generateErrorFutureUnaryCall(accountNotFound), new FutureCallback<Empty>() {
+            @Override
+            public void onSuccess(Empty result) {
+                complete();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                complete();
+            }
+
+            private void complete() {
+                histogram.recordValue(Math.min(System.nanoTime() - start, histogram.getHighestTrackableValue()));
+                calls.incrementAndGet();
+                next(client, histogram, calls, deadline, done);
+            }
+        });
+    }
+
+    /**
+     * Delays the response of a random fraction of calls, as an occasionally slow server would.
+     */
+    private static final class SlowInjector implements ServerInterceptor {
+        private final ScheduledExecutorService delayer;
+        private final AtomicLong attempts;
+        private final double slowFraction;
+        private final long slowMillis;
+
+        SlowInjector(ScheduledExecutorService delayer, AtomicLong attempts, double slowFraction, long slowMillis) {
+            this.delayer = delayer;
+            this.attempts = attempts;
+            this.slowFraction = slowFraction;
+            this.slowMillis = slowMillis;
+        }
+
+        @Override
+        public <ReqT, ResT> ServerCall.Listener<ReqT> interceptCall(
+            String method, ServerCall<ResT> call, Metadata.Headers headers, ServerCallHandler<ReqT, ResT> next) {
+            attempts.incrementAndGet();
+            if (ThreadLocalRandom.current().nextDouble() >= slowFraction) {
+                return next.startCall(method, call, headers);
+            }
+            return next.startCall(method, new ForwardingServerCall.SimpleForwardingServerCall<ResT>(call) {
+                @Override
+                public void close(Status status, Metadata.Trailers trailers) {
+                    delayer.schedule(() -> super.close(status, trailers), slowMillis, TimeUnit.MILLISECONDS);
+                }
+            }, headers);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package example;
+
+import com.google.common.base.Joiner;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.protobuf.Empty;
+import io.grpc.stub.StreamObserver;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end latency harness which drives an in-process ExampleServer over loopback with each ExampleClient call
+ * style at fixed concurrency levels. Each worker issues its next call as soon as the previous one completes.
+ * Results are printed and written as a JSON array. Run with:
+ * <pre>
+ *   mvn -Pjmh test-compile exec:exec@latency [-Dlatency.concurrency=1,16,64] [-Dlatency.seconds=10]
+ * </pre>
+ * Allocation per call is the process-wide allocation (client and server share the JVM) divided by the number of
+ * calls, so it's only meaningful for comparing styles. It's summed over live threads, so blocking workers add their
+ * own allocation just before they exit; pool threads which exit during a run are still missed.
+ */
+public class LatencyHarness {
+    private static final ErrorStatus accountNotFound =
+        ErrorStatus.forCode(ErrorStatus.Code.accountNotFound).withMessage("Account not found");
+    private static final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private enum Style {
+        blockingStub, futureStub, asyncStub, blockingUnaryCall, futureUnaryCall, asyncUnaryCall
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        String[] concurrencies = (args.length > 1 ? args[1] : "1,16,64").split(",");
+        long seconds = args.length > 2 ? Long.parseLong(args[2]) : 10;
+        File output = new File(args.length > 3 ? args[3] : "target/latency-results.json");
+
+        ExampleServer server = ExampleServer.forPort(port);
+        server.startAsync().awaitRunning();
+        List<String> results = new ArrayList<>();
+        try (ExampleClient client = ExampleClient.forAddress(new InetSocketAddress("localhost", port))) {
+            for (Style style : Style.values()) {
+                for (String concurrency : concurrencies) {
+                    int n = Integer.parseInt(concurrency.trim());
+                    run(client, style, n, TimeUnit.SECONDS.toNanos(seconds) / 2);
+                    String result = run(client, style, n, TimeUnit.SECONDS.toNanos(seconds));
+                    System.out.println(result);
+                    results.add(result);
+                }
+            }
+        } finally {
+            server.stopAsync().awaitTerminated();
+        }
+        output.getParentFile().mkdirs();
+        Files.write(output.toPath(), ("[\n" + Joiner.on(",\n").join(results) + "\n]\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String run(ExampleClient client, Style style, int concurrency, long durationNanos)
+        throws InterruptedException {
+        Histogram histogram = new ConcurrentHistogram(TimeUnit.SECONDS.toNanos(10), 3);
+        AtomicLong calls = new AtomicLong();
+        AtomicLong exitedAllocated = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(concurrency);
+        List<Thread> threads = new ArrayList<>();
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        long deadline = start + durationNanos;
+        for (int i = 0; i < concurrency; i++) {
+            Worker worker = new Worker(client, style, histogram, calls, deadline, done);
+            if (style == Style.blockingStub || style == Style.blockingUnaryCall) {
+                Thread thread = new Thread(() -> {
+                    worker.loop();
+                    exitedAllocated.addAndGet(threadAllocatedBytes());
+                }, "latency-" + i);
+                threads.add(thread);
+                thread.start();
+            } else {
+                worker.next();
+            }
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        // Joined workers are no longer counted by allocatedBytes(), so their own totals are added instead
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        allocated = allocatedBytes() - allocated + exitedAllocated.get();
+        return String.format("{\"style\": \"%s\", \"concurrency\": %d, \"calls\": %d, \"throughput\": %.1f, "
+                + "\"p50Micros\": %.1f, \"p99Micros\": %.1f, \"p999Micros\": %.1f, \"allocatedBytesPerCall\": %d}",
+            style, concurrency, calls.get(), calls.get() * 1e9 / elapsed,
+            histogram.getValueAtPercentile(50) / 1e3, histogram.getValueAtPercentile(99) / 1e3,
+            histogram.getValueAtPercentile(99.9) / 1e3, allocated / Math.max(1, calls.get()));
+    }
+
+    private static long allocatedBytes() {
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            total += Math.max(0, bytes);
+        }
+        return total;
+    }
+
+    private static long threadAllocatedBytes() {
+        return Math.max(0, threads.getThreadAllocatedBytes(Thread.currentThread().getId()));
+    }
+
+    private static final class Worker {
+        private final ExampleClient client;
+        private final Style style;
+        private final Histogram histogram;
+        private final AtomicLong calls;
+        private final long deadline;
+        private final CountDownLatch done;
+
+        Worker(ExampleClient client, Style style, Histogram histogram, AtomicLong calls, long deadline,
+               CountDownLatch done) {
+            this.client = client;
+            this.style = style;
+            this.histogram = histogram;
+            this.calls = calls;
+            this.deadline = deadline;
+            this.done = done;
+        }
+
+        void loop() {
+            while (System.nanoTime() < deadline) {
+                long start = System.nanoTime();
+                try {
+                    if (style == Style.blockingStub) {
+                        client.generateErrorBlockingStub(accountNotFound);
+                    } else {
+                        client.generateErrorBlockingUnaryCall(accountNotFound);
+                    }
+                } catch (ErrorException e) {
+                    // Expected, every call fails
+                }
+                record(start);
+            }
+            done.countDown();
+        }
+
+        void next() {
+            if (System.nanoTime() >= deadline) {
+                done.countDown();
+                return;
+            }
+            long start = System.nanoTime();
+            switch (style) {
+            case futureStub:
+                callback(client.generateErrorFutureStub(accountNotFound), start);
+                break;
+            case futureUnaryCall:
+                callback(client.generateErrorFutureUnaryCall(accountNotFound), start);
+                break;
+            case asyncStub:
+                client.generateErrorAsyncStub(accountNotFound, observer(start));
+                break;
+            default:
+                client.generateErrorAsyncUnaryCall(accountNotFound, observer(start));
+            }
+        }
+
+        private void callback(ListenableFuture<Empty> future, long start) {
+            Futures.addCallback(future, new FutureCallback<Empty>() {
+                @Override
+                public void onSuccess(Empty result) {
+                    complete(start);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    complete(start);
+                }
+            });
+        }
+
+        private StreamObserver<Empty> observer(long start) {
+            return new StreamObserver<Empty>() {
+                @Override
+                public void onValue(Empty value) {
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    complete(start);
+                }
+
+                @Override
+                public void onCompleted() {
+                    complete(start);
+                }
+            };
+        }
+
+        private void complete(long start) {
+            record(start);
+            next();
+        }
+
+        private void record(long start) {
+            histogram.recordValue(Math.min(System.nanoTime() - start, histogram.getHighestTrackableValue()));
+            calls.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package example;
+
+import com.google.protobuf.Empty;
+import io.grpc.stub.StreamObserver;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures ExampleServer throughput as the number of SO_REUSEPORT acceptors and worker threads grows from 1 to N
+ * cores (default all available processors). Load comes from several clients in the same process, each with its own
+ * connection, so leave some cores free for them when reading the results. Run with:
+ * <pre>
+ *   mvn -Pjmh test-compile exec:exec@scaling [-Dscaling.maxCores=8] [-Dscaling.seconds=10]
+ * </pre>
+ */
+public class ServerScalingHarness {
+    private static final int clients = 16;
+    private static final int callsPerClient = 64;
+    private static final ErrorStatus accountNotFound = ErrorStatus.forCode(ErrorStatus.Code.accountNotFound);
+
+    public static void main(String[] args) throws Exception {
+        int maxCores = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        if (maxCores <= 0) {
+            maxCores = Runtime.getRuntime().availableProcessors();
+        }
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 10;
+        for (int cores = 1; cores <= maxCores; cores *= 2) {
+            System.out.printf("{\"cores\": %d, \"throughput\": %.1f}%n", cores, run(cores, seconds));
+        }
+    }
+
+    private static double run(int cores, long seconds) throws InterruptedException {
+        ExampleServer server = ExampleServer.newBuilder(0).acceptors(cores).workerThreads(cores).build();
+        server.startAsync().awaitRunning();
+        List<ExampleClient> connections = new ArrayList<>();
+        AtomicLong calls = new AtomicLong();
+        try {
+            for (int i = 0; i < clients; i++) {
+                ExampleClient client = ExampleClient.forAddress(new InetSocketAddress("localhost", server.port()));
+                connections.add(client);
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds + 1);
+            for (ExampleClient client : connections) {
+                for (int i = 0; i < callsPerClient; i++) {
+                    call(client, calls, deadline);
+                }
+            }
+            long start = calls.get();
+            long startNanos = System.nanoTime();
+            Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+            return (calls.get() - start) * 1e9 / (System.nanoTime() - startNanos);
+        } finally {
+            connections.forEach(ExampleClient::close);
+            server.stopAsync().awaitTerminated();
+        }
+    }
+
+    private static void call(ExampleClient client, AtomicLong calls, long deadline) {
+        if (System.nanoTime() >= deadline) {
+            return;
+        }
+        client.generateErrorAsyncUnaryCall(accountNotFound, new StreamObserver<Empty>() {
+            @Override
+            public void onValue(Empty value) {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                calls.incrementAndGet();
+                call(client, calls, deadline);
+            }
+
+            @Override
+            public void onCompleted() {
+                calls.incrementAndGet();
+                call(client, calls, deadline);
+            }
+        });
+    }
+}
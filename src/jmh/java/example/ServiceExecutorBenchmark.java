@@ -0,0 +1,71 @@
+package example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the hand-off cost of each ServiceExecutors strategy with blocking calls over loopback. The virtual mode
+ * requires running on Java 21 or later.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ServiceExecutorBenchmark {
+    private static final ErrorStatus accountNotFound = ErrorStatus.forCode(ErrorStatus.Code.accountNotFound);
+
+    @Param({"default", "direct", "fixed", "forkJoin", "virtual"})
+    public String mode;
+
+    private ExecutorService executor;
+    private ExampleServer server;
+    private ExampleClient client;
+
+    @Setup
+    public void setUp() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        switch (mode) {
+        case "direct":
+            executor = ServiceExecutors.direct();
+            break;
+        case "fixed":
+            executor = ServiceExecutors.fixed(cores, 1024);
+            break;
+        case "forkJoin":
+            executor = ServiceExecutors.forkJoin(cores);
+            break;
+        case "virtual":
+            executor = ServiceExecutors.virtualThreadPerCall();
+            break;
+        default:
+        }
+        server = ExampleServer.newBuilder(0).serviceExecutor(executor).build();
+        server.startAsync().awaitRunning();
+        client = ExampleClient.forAddress(new InetSocketAddress("localhost", server.port()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        server.stopAsync().awaitTerminated();
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object blockingUnaryCall() {
+        try {
+            client.generateErrorBlockingUnaryCall(accountNotFound);
+            return null;
+        } catch (ErrorException e) {
+            return e;
+        }
+    }
+}
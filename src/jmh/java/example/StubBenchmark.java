@@ -0,0 +1,79 @@
+package example;
+
+import io.grpc.Channel;
+import io.grpc.ChannelImpl;
+import io.grpc.ClientInterceptors;
+import io.grpc.transport.netty.NegotiationType;
+import io.grpc.transport.netty.NettyChannelBuilder;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Compares blocking stub calls using a raw stub, a stub rebuilt per call with a capturing interceptor (the previous
+ * ExampleClient approach) and a stub built once with Errors.errorStatusInterceptor().
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StubBenchmark {
+    private static final Example.GenerateErrorRequest request = Example.GenerateErrorRequest.newBuilder()
+        .setCode(ErrorStatus.Code.accountNotFound.name())
+        .build();
+
+    private ExampleServer server;
+    private ChannelImpl channel;
+    private ExampleServiceGrpc.ExampleServiceBlockingStub rawStub;
+    private ExampleServiceGrpc.ExampleServiceBlockingStub cachedStub;
+
+    @Setup
+    public void setUp() {
+        server = ExampleServer.forPort(0);
+        server.startAsync().awaitRunning();
+        channel = NettyChannelBuilder.forAddress(new InetSocketAddress("localhost", server.port()))
+            .channelType(NioSocketChannel.class).negotiationType(NegotiationType.PLAINTEXT).build();
+        rawStub = ExampleServiceGrpc.newBlockingStub(channel);
+        Channel intercepted = ClientInterceptors.intercept(channel, Errors.errorStatusInterceptor());
+        cachedStub = ExampleServiceGrpc.newBlockingStub(intercepted);
+    }
+
+    @TearDown
+    public void tearDown() {
+        channel.shutdownNow();
+        server.stopAsync().awaitTerminated();
+    }
+
+    @Benchmark
+    public Object rawStub() {
+        try {
+            return rawStub.generateError(request);
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object perCallInterceptor() {
+        AtomicReference<ErrorStatus> status = new AtomicReference<>();
+        try {
+            return rawStub.withInterceptors(Errors.clientInterceptor(status::set)).generateError(request);
+        } catch (RuntimeException e) {
+            return ErrorException.fromThrowable(e).withErrorStatus(status.get());
+        }
+    }
+
+    @Benchmark
+    public Object cachedInterceptor() {
+        try {
+            return cachedStub.generateError(request);
+        } catch (RuntimeException e) {
+            return ErrorException.fromThrowable(e);
+        }
+    }
+}
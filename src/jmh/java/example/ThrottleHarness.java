@@ -0,0 +1,135 @@
+package example;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.protobuf.Empty;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulation of AdaptiveThrottle against an overloaded server. The server admits a fixed number of concurrent calls,
+ * each held for a service time, and sheds the rest with RESOURCE_EXHAUSTED. The client offers a fixed open-loop
+ * rate above capacity, without and with the throttle, and the harness reports how many requests reached the server,
+ * how many it shed, how many were rejected locally and the goodput. Run with:
+ * <pre>
+ *   mvn -Pjmh test-compile exec:exec@throttle [-Dthrottle.rate=20000] [-Dthrottle.capacity=50]
+ * </pre>
+ */
+public class ThrottleHarness {
+    private static final ErrorStatus accountNotFound = ErrorStatus.forCode(ErrorStatus.Code.accountNotFound);
+
+    public static void main(String[] args) throws Exception {
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int capacity = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        long serviceMillis = args.length > 2 ? Long.parseLong(args[2]) : 5;
+        long seconds = args.length > 3 ? Long.parseLong(args[3]) : 20;
+
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+        Overload overload = new Overload(scheduler, capacity, serviceMillis);
+        ExampleServer server = ExampleServer.newBuilder(0).interceptors(overload).build();
+        server.startAsync().awaitRunning();
+        InetSocketAddress address = new InetSocketAddress("localhost", server.port());
+        System.out.printf("capacity %.0f calls/s, offered %d calls/s%n", capacity * 1000.0 / serviceMillis, rate);
+        try {
+            run("none", ExampleClient.forAddress(address), null, overload, scheduler, rate, seconds);
+            AdaptiveThrottle throttle = AdaptiveThrottle.newBuilder().window(10, TimeUnit.SECONDS).build();
+            run("adaptive", ExampleClient.newBuilder(address).adaptiveThrottle(throttle).build(), throttle, overload,
+                scheduler, rate, seconds);
+        } finally {
+            server.stopAsync().awaitTerminated();
+            scheduler.shutdownNow();
+        }
+    }
+
+    private static void run(String name, ExampleClient client, AdaptiveThrottle throttle, Overload overload,
+                            ScheduledExecutorService scheduler, int rate, long seconds) throws InterruptedException {
+        AtomicLong accepted = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        long received = overload.received.get();
+        long shed = overload.shed.get();
+        long offered = (long) rate * seconds;
+        // Issue a batch every millisecond to approximate the offered rate
+        int batch = Math.max(1, rate / 1000);
+        AtomicLong issued = new AtomicLong();
+        Runnable tick = () -> {
+            for (int i = 0; i < batch && issued.incrementAndGet() <= offered; i++) {
+                Futures.addCallback(client.generateErrorFutureUnaryCall(accountNotFound), new FutureCallback<Empty>() {
+                    @Override
+                    public void onSuccess(Empty result) {
+                        accepted.incrementAndGet();
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        Status.Code code = ErrorException.fromThrowable(t).getStatus().getCode();
+                        (code == Status.Code.NOT_FOUND ? accepted : failed).incrementAndGet();
+                    }
+                });
+            }
+        };
+        ScheduledFuture<?> ticks = scheduler.scheduleAtFixedRate(tick, 0, 1, TimeUnit.MILLISECONDS);
+        try {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(seconds) + 1000);
+        } finally {
+            ticks.cancel(false);
+            client.close();
+        }
+        System.out.printf("{\"throttle\": \"%s\", \"offered\": %d, \"sentToServer\": %d, \"shedByServer\": %d, "
+                + "\"rejectedLocally\": %d, \"goodputPerSecond\": %.1f, \"failed\": %d}%n",
+            name, Math.min(offered, issued.get()), overload.received.get() - received, overload.shed.get() - shed,
+            throttle != null ? throttle.rejected() : 0, accepted.get() / (double) seconds, failed.get());
+    }
+
+    /**
+     * Admits up to capacity concurrent calls, holding each for the service time, and sheds the rest with
+     * RESOURCE_EXHAUSTED.
+     */
+    private static final class Overload implements ServerInterceptor {
+        private final ScheduledExecutorService scheduler;
+        private final Semaphore permits;
+        private final long serviceMillis;
+        final AtomicLong received = new AtomicLong();
+        final AtomicLong shed = new AtomicLong();
+
+        Overload(ScheduledExecutorService scheduler, int capacity, long serviceMillis) {
+            this.scheduler = scheduler;
+            this.permits = new Semaphore(capacity);
+            this.serviceMillis = serviceMillis;
+        }
+
+        @Override
+        public <ReqT, ResT> ServerCall.Listener<ReqT> interceptCall(
+            String method, ServerCall<ResT> call, Metadata.Headers headers, ServerCallHandler<ReqT, ResT> next) {
+            received.incrementAndGet();
+            boolean admitted = permits.tryAcquire();
+            if (!admitted) {
+                shed.incrementAndGet();
+            }
+            return next.startCall(method, new ForwardingServerCall.SimpleForwardingServerCall<ResT>(call) {
+                @Override
+                public void close(Status status, Metadata.Trailers trailers) {
+                    if (!admitted) {
+                        super.close(Status.RESOURCE_EXHAUSTED.withDescription("Overloaded"), new Metadata.Trailers());
+                        return;
+                    }
+                    scheduler.schedule(() -> {
+                        permits.release();
+                        super.close(status, trailers);
+                    }, serviceMillis, TimeUnit.MILLISECONDS);
+                }
+            }, headers);
+        }
+    }
+}
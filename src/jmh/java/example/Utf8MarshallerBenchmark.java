@@ -0,0 +1,56 @@
+package example;
+
+import com.google.common.base.Charsets;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures decoding error messages with the UTF-8 marshallers against String's own decoder, over message lengths
+ * below and above the interning limit and over ASCII and non-ASCII content. Run with -prof gc to see allocation per
+ * decode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class Utf8MarshallerBenchmark {
+    private static final Marshallers.Utf8Marshaller utf8Marshaller = Marshallers.utf8Marshaller();
+    private static final Marshallers.Utf8Marshaller internedUtf8Marshaller = Marshallers.internedUtf8Marshaller(64);
+
+    /** Length of the encoded message in bytes. */
+    @Param({"16", "64", "1024"})
+    public int length;
+
+    @Param({"ascii", "nonAscii"})
+    public String content;
+
+    private byte[] message;
+
+    @Setup
+    public void setUp() {
+        String pattern = content.equals("ascii") ? "Account not found " : "Konto nicht gefunden – ü ";
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.toString().getBytes(Charsets.UTF_8).length < length; i++) {
+            text.append(pattern.charAt(i % pattern.length()));
+        }
+        message = text.toString().getBytes(Charsets.UTF_8);
+    }
+
+    @Benchmark
+    public String defaultDecoder() {
+        return new String(message, Charsets.UTF_8);
+    }
+
+    @Benchmark
+    public String parse() {
+        return utf8Marshaller.parseBytes(message);
+    }
+
+    @Benchmark
+    public String parseInterned() {
+        return internedUtf8Marshaller.parseBytes(message);
+    }
+}
@@ -0,0 +1,132 @@
+package example;
+
+import com.google.protobuf.Empty;
+import io.grpc.stub.StreamObserver;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares N concurrent virtual-thread callers making blocking unary calls on a direct executor client against the
+ * async stub with N calls in flight on a default client. Requires Java 21 or later. Run with:
+ * <pre>
+ *   mvn -Pjmh test-compile exec:exec@virtual-threads [-Dcallers=10000] [-Dvirtual.seconds=10]
+ * </pre>
+ */
+public class VirtualThreadHarness {
+    private static final ErrorStatus accountNotFound = ErrorStatus.forCode(ErrorStatus.Code.accountNotFound);
+
+    public static void main(String[] args) throws Exception {
+        int callers = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 10;
+        ExampleServer server = ExampleServer.forPort(0);
+        server.startAsync().awaitRunning();
+        InetSocketAddress address = new InetSocketAddress("localhost", server.port());
+        long duration = TimeUnit.SECONDS.toNanos(seconds);
+        try {
+            try (ExampleClient client = ExampleClient.newBuilder(address).directExecutor(true).build()) {
+                virtualThreads(client, callers, duration / 2);
+                report("virtualThreadBlocking", callers, virtualThreads(client, callers, duration));
+            }
+            try (ExampleClient client = ExampleClient.forAddress(address)) {
+                asyncStub(client, callers, duration / 2);
+                report("asyncStub", callers, asyncStub(client, callers, duration));
+            }
+        } finally {
+            server.stopAsync().awaitTerminated();
+        }
+    }
+
+    private static Result virtualThreads(ExampleClient client, int callers, long durationNanos)
+        throws InterruptedException {
+        Result result = new Result(durationNanos);
+        ExecutorService executor = ServiceExecutors.virtualThreadPerCall();
+        CountDownLatch done = new CountDownLatch(callers);
+        for (int i = 0; i < callers; i++) {
+            executor.execute(() -> {
+                while (!result.expired()) {
+                    long start = System.nanoTime();
+                    try {
+                        client.generateErrorBlockingUnaryCall(accountNotFound);
+                    } catch (ErrorException e) {
+                        // Expected, every call fails
+                    }
+                    result.record(start);
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+        executor.shutdown();
+        return result;
+    }
+
+    private static Result asyncStub(ExampleClient client, int callers, long durationNanos)
+        throws InterruptedException {
+        Result result = new Result(durationNanos);
+        CountDownLatch done = new CountDownLatch(callers);
+        for (int i = 0; i < callers; i++) {
+            asyncCall(client, result, done);
+        }
+        done.await();
+        return result;
+    }
+
+    private static void asyncCall(ExampleClient client, Result result, CountDownLatch done) {
+        if (result.expired()) {
+            done.countDown();
+            return;
+        }
+        long start = System.nanoTime();
+        client.generateErrorAsyncStub(accountNotFound, new StreamObserver<Empty>() {
+            @Override
+            public void onValue(Empty value) {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                result.record(start);
+                asyncCall(client, result, done);
+            }
+
+            @Override
+            public void onCompleted() {
+                result.record(start);
+                asyncCall(client, result, done);
+            }
+        });
+    }
+
+    private static void report(String mode, int callers, Result result) {
+        System.out.printf("{\"mode\": \"%s\", \"callers\": %d, \"throughput\": %.1f, \"p50Micros\": %.1f, "
+                + "\"p99Micros\": %.1f, \"p999Micros\": %.1f}%n",
+            mode, callers, result.calls.get() * 1e9 / (System.nanoTime() - result.start),
+            result.histogram.getValueAtPercentile(50) / 1e3, result.histogram.getValueAtPercentile(99) / 1e3,
+            result.histogram.getValueAtPercentile(99.9) / 1e3);
+    }
+
+    private static final class Result {
+        final Histogram histogram = new ConcurrentHistogram(TimeUnit.SECONDS.toNanos(10), 3);
+        final AtomicLong calls = new AtomicLong();
+        final long start = System.nanoTime();
+        final long deadline;
+
+        Result(long durationNanos) {
+            deadline = start + durationNanos;
+        }
+
+        boolean expired() {
+            return System.nanoTime() >= deadline;
+        }
+
+        void record(long start) {
+            histogram.recordValue(Math.min(System.nanoTime() - start, histogram.getHighestTrackableValue()));
+            calls.incrementAndGet();
+        }
+    }
+}
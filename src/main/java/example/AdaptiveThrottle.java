@@ -0,0 +1,179 @@
+package example;
+
+import com.google.common.base.Ticker;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client-side adaptive throttling as described in the Google SRE book. The client counts requests and the requests
+ * the server accepted over a sliding window, and once the server is shedding load rejects new requests locally
+ * with probability max(0, (requests - k * accepts) / (requests + 1)). RESOURCE_EXHAUSTED, UNAVAILABLE and other
+ * server errors count as rejections; successes and client errors such as accountNotFound count as accepts.
+ * Locally rejected requests count as requests too, so the throttle backs off further while the server is still
+ * overloaded and lets traffic back in as accepts recover.
+ */
+public final class AdaptiveThrottle {
+    private static final int buckets = 10;
+    private static final Status throttled = Status.UNAVAILABLE.withDescription("Throttled by client");
+
+    private final double k;
+    private final SlidingWindow window;
+    private final LongAdder rejected = new LongAdder();
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    private AdaptiveThrottle(Builder builder) {
+        k = builder.k;
+        window = new SlidingWindow(buckets, builder.windowNanos, builder.ticker);
+    }
+
+    /**
+     * Returns the current probability of rejecting a request locally.
+     */
+    public double rejectionProbability() {
+        long requests = window.count();
+        long accepts = window.hits();
+        return Math.max(0, (requests - k * accepts) / (requests + 1));
+    }
+
+    /**
+     * Returns the number of requests rejected locally.
+     */
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    static boolean isRejection(Status status) {
+        return !status.isOk() && !ErrorException.isClientError(status.getCode());
+    }
+
+    /**
+     * ClientInterceptor which throttles calls. Locally rejected calls fail with UNAVAILABLE.
+     */
+    public ClientInterceptor interceptor() {
+        return new ClientInterceptor() {
+            @Override
+            public <ReqT, ResT> ClientCall<ReqT, ResT> interceptCall(MethodDescriptor<ReqT, ResT> method,
+                                                                     CallOptions callOptions, Channel next) {
+                return new ThrottledCall<>(method, callOptions, next);
+            }
+        };
+    }
+
+    /**
+     * Call which decides whether to reject locally when started, so calls which are created but never started don't
+     * count as requests, creating the real call only if it isn't rejected.
+     */
+    private final class ThrottledCall<ReqT, ResT> extends ClientCall<ReqT, ResT> {
+        private final MethodDescriptor<ReqT, ResT> method;
+        private final CallOptions callOptions;
+        private final Channel next;
+        private volatile ClientCall<ReqT, ResT> delegate;
+
+        ThrottledCall(MethodDescriptor<ReqT, ResT> method, CallOptions callOptions, Channel next) {
+            this.method = method;
+            this.callOptions = callOptions;
+            this.next = next;
+        }
+
+        @Override
+        public void start(Listener<ResT> listener, Metadata.Headers headers) {
+            double p = rejectionProbability();
+            if (p > 0 && ThreadLocalRandom.current().nextDouble() < p) {
+                window.record(false);
+                rejected.increment();
+                ClientCall<ReqT, ResT> call = new RejectedCall<>(throttled);
+                delegate = call;
+                call.start(listener, headers);
+                return;
+            }
+            ClientCall<ReqT, ResT> call = next.newCall(method, callOptions);
+            delegate = call;
+            call.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<ResT>(listener) {
+                @Override
+                public void onClose(Status status, Metadata.Trailers trailers) {
+                    // Cancelled calls tell nothing about the server
+                    if (status.getCode() != Status.Code.CANCELLED) {
+                        window.record(!isRejection(status));
+                    }
+                    super.onClose(status, trailers);
+                }
+            }, headers);
+        }
+
+        @Override
+        public void request(int numMessages) {
+            delegate.request(numMessages);
+        }
+
+        @Override
+        public void sendPayload(ReqT payload) {
+            delegate.sendPayload(payload);
+        }
+
+        @Override
+        public void halfClose() {
+            delegate.halfClose();
+        }
+
+        @Override
+        public void cancel() {
+            ClientCall<ReqT, ResT> call = delegate;
+            if (call != null) {
+                call.cancel();
+            }
+        }
+    }
+
+    /**
+     * Builder for AdaptiveThrottle. Defaults to k = 2 over a 2 minute window.
+     */
+    public static final class Builder {
+        private double k = 2;
+        private long windowNanos = TimeUnit.MINUTES.toNanos(2);
+        private Ticker ticker = Ticker.systemTicker();
+
+        private Builder() {}
+
+        /**
+         * Multiplier of accepts the client may send before throttling. Lower values throttle more aggressively.
+         */
+        public Builder k(double k) {
+            if (k < 1) {
+                throw new IllegalArgumentException("k must be at least 1");
+            }
+            this.k = k;
+            return this;
+        }
+
+        /**
+         * Length of the sliding window of requests and accepts, which is divided into 10 buckets.
+         */
+        public Builder window(long window, TimeUnit unit) {
+            this.windowNanos = unit.toNanos(window);
+            return this;
+        }
+
+        public Builder ticker(Ticker ticker) {
+            this.ticker = Objects.requireNonNull(ticker, "ticker");
+            return this;
+        }
+
+        public AdaptiveThrottle build() {
+            return new AdaptiveThrottle(this);
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package example;
+
+import com.google.common.base.Ticker;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientInterceptors;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Pool of channels to different backends serving the same service. Each call goes to a backend picked by the
+ * balancer, skipping backends ejected as outliers. Per-backend calls in flight, latency and server error rate are
+ * tracked from each call's listener.
+ */
+public class BackendPool {
+    /**
+     * How calls are spread across backends. Power of two choices samples two backends at random and picks the one
+     * with the lower latency times calls in flight, so a slow or busy backend is avoided without scanning them all.
+     * Consistent hash routes each request by a key extracted from it, so the same key keeps hitting the same
+     * backend and its caches, while bounding each backend's calls in flight to loadFactor times the average.
+     */
+    public enum Balancer {
+        roundRobin, powerOfTwoChoices, consistentHash
+    }
+
+    private static final int buckets = 10;
+    private static final int maxEjectionMultiplier = 10;
+    private static final int replicas = 100;
+    private static final double loadFactor = 1.25;
+    // Random draws for power of two choices before sampling the healthy backends by rank
+    private static final int maxDraws = 4;
+
+    private final List<Backend> backends = new ArrayList<>();
+    private final Balancer balancer;
+    private final Function<Object, String> keyExtractor;
+    private final HashRing ring;
+    private final OutlierDetection outlierDetection;
+    private final Ticker ticker;
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder ejections = new LongAdder();
+    private final Channel channel;
+
+    /**
+     * Creates a pool over a channel per backend address. Outlier detection may be null, in which case backends are
+     * never ejected.
+     */
+    public static BackendPool create(List<SocketAddress> addresses, List<? extends Channel> channels,
+                                     Balancer balancer, OutlierDetection outlierDetection) {
+        return create(addresses, channels, balancer, null, outlierDetection);
+    }
+
+    /**
+     * Creates a pool with a key extractor for consistent hash routing, which is given each request message and may
+     * return null to route the request by round robin instead.
+     */
+    public static BackendPool create(List<SocketAddress> addresses, List<? extends Channel> channels,
+                                     Balancer balancer, Function<Object, String> keyExtractor,
+                                     OutlierDetection outlierDetection) {
+        if (channels.isEmpty() || addresses.size() != channels.size()) {
+            throw new IllegalArgumentException("need one channel per backend address");
+        }
+        if (balancer == Balancer.consistentHash && keyExtractor == null) {
+            throw new IllegalArgumentException("consistent hash routing needs a key extractor");
+        }
+        return new BackendPool(addresses, channels, Objects.requireNonNull(balancer, "balancer"), keyExtractor,
+            outlierDetection);
+    }
+
+    private BackendPool(List<SocketAddress> addresses, List<? extends Channel> channels, Balancer balancer,
+                        Function<Object, String> keyExtractor, OutlierDetection outlierDetection) {
+        this.balancer = balancer;
+        this.keyExtractor = keyExtractor;
+        this.ring = balancer == Balancer.consistentHash ? HashRing.create(addresses, replicas) : null;
+        this.outlierDetection = outlierDetection;
+        ticker = outlierDetection != null ? outlierDetection.ticker : Ticker.systemTicker();
+        long windowNanos = outlierDetection != null ? outlierDetection.windowNanos : 1;
+        for (int i = 0; i < channels.size(); i++) {
+            backends.add(new Backend(addresses.get(i), channels.get(i), new SlidingWindow(buckets, windowNanos, ticker),
+                new SlidingWindow(buckets, windowNanos, ticker)));
+        }
+        // Routing interceptor which ignores the channel it's attached to and picks a backend per call
+        channel = ClientInterceptors.intercept(channels.get(0), new ClientInterceptor() {
+            @Override
+            public <ReqT, ResT> ClientCall<ReqT, ResT> interceptCall(MethodDescriptor<ReqT, ResT> method,
+                                                                     CallOptions callOptions, Channel next) {
+                if (ring != null) {
+                    return new KeyedCall<>(method, callOptions);
+                }
+                Backend backend = select();
+                return trackingCall(backend, backend.channel.newCall(method, callOptions));
+            }
+        });
+    }
+
+    /**
+     * Returns a channel which places each call on one of the backends.
+     */
+    public Channel channel() {
+        return channel;
+    }
+
+    public int size() {
+        return backends.size();
+    }
+
+    public SocketAddress address(int index) {
+        return backends.get(index).address;
+    }
+
+    public int inFlight(int index) {
+        return backends.get(index).inFlight.get();
+    }
+
+    /**
+     * Returns the backend's exponentially weighted moving average latency, or 0 if it has no samples.
+     */
+    public long latencyNanos(int index) {
+        return backends.get(index).ewmaNanos.get();
+    }
+
+    public boolean isEjected(int index) {
+        return backends.get(index).isEjected(ticker.read());
+    }
+
+    /**
+     * Returns the total number of ejections.
+     */
+    public long ejections() {
+        return ejections.sum();
+    }
+
+    private Backend select() {
+        if (balancer == Balancer.powerOfTwoChoices && backends.size() > 1) {
+            Backend backend = selectPowerOfTwo();
+            if (backend != null) {
+                return backend;
+            }
+        }
+        int size = backends.size();
+        int start = (next.getAndIncrement() & Integer.MAX_VALUE) % size;
+        if (outlierDetection == null) {
+            return backends.get(start);
+        }
+        long now = ticker.read();
+        for (int i = 0; i < size; i++) {
+            Backend backend = backends.get((start + i) % size);
+            if (!backend.isEjected(now)) {
+                return backend;
+            }
+        }
+        return backends.get(start);
+    }
+
+    /**
+     * Picks the first backend clockwise from the key on the ring which isn't ejected and has fewer calls in flight
+     * than loadFactor times the average, counting this call.
+     */
+    private Backend selectConsistentHash(String key) {
+        long inFlight = 0;
+        for (Backend backend : backends) {
+            inFlight += backend.inFlight.get();
+        }
+        double capacity = Math.ceil(loadFactor * (inFlight + 1) / backends.size());
+        long now = ticker.read();
+        return backends.get(ring.select(key, i -> {
+            Backend backend = backends.get(i);
+            return backend.inFlight.get() < capacity && (outlierDetection == null || !backend.isEjected(now));
+        }));
+    }
+
+    /**
+     * Picks the better of two distinct random backends which aren't ejected, or returns null if fewer than two
+     * aren't, so the caller falls back to scanning. Ejected backends are skipped by drawing again a few times, and
+     * only if that fails are the healthy backends counted and sampled by rank, so picks never allocate.
+     */
+    private Backend selectPowerOfTwo() {
+        int size = backends.size();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (outlierDetection == null) {
+            int first = random.nextInt(size);
+            int second = random.nextInt(size - 1);
+            return better(backends.get(first), backends.get(second >= first ? second + 1 : second));
+        }
+        long now = ticker.read();
+        Backend a = null;
+        for (int draws = 0; draws < maxDraws; draws++) {
+            Backend backend = backends.get(random.nextInt(size));
+            if (backend == a || backend.isEjected(now)) {
+                continue;
+            }
+            if (a != null) {
+                return better(a, backend);
+            }
+            a = backend;
+        }
+        int healthy = 0;
+        for (Backend backend : backends) {
+            if (!backend.isEjected(now)) {
+                healthy++;
+            }
+        }
+        if (healthy < 2) {
+            return null;
+        }
+        int first = random.nextInt(healthy);
+        int second = random.nextInt(healthy - 1);
+        if (second >= first) {
+            second++;
+        }
+        a = null;
+        Backend b = null;
+        int rank = 0;
+        for (Backend backend : backends) {
+            if (backend.isEjected(now)) {
+                continue;
+            }
+            if (rank == first) {
+                a = backend;
+            } else if (rank == second) {
+                b = backend;
+            }
+            rank++;
+        }
+        // Backends ejected or returning between the passes may leave a rank unfilled
+        return a != null && b != null ? better(a, b) : null;
+    }
+
+    private static Backend better(Backend a, Backend b) {
+        return a.load() <= b.load() ? a : b;
+    }
+
+    private <ReqT, ResT> ClientCall<ReqT, ResT> trackingCall(Backend backend, ClientCall<ReqT, ResT> delegate) {
+        return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, ResT>(delegate) {
+            @Override
+            public void start(Listener<ResT> listener, Metadata.Headers headers) {
+                backend.inFlight.incrementAndGet();
+                long start = System.nanoTime();
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<ResT>(listener) {
+                    @Override
+                    public void onClose(Status status, Metadata.Trailers trailers) {
+                        backend.inFlight.decrementAndGet();
+                        if (status.getCode() != Status.Code.CANCELLED) {
+                            onResult(backend, System.nanoTime() - start, status);
+                        }
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+        };
+    }
+
+    /**
+     * Call which picks its backend once the request message, and so its key, is known.
+     */
+    private final class KeyedCall<ReqT, ResT> extends DelayedCall<ReqT, ResT> {
+        private final MethodDescriptor<ReqT, ResT> method;
+        private final CallOptions callOptions;
+
+        KeyedCall(MethodDescriptor<ReqT, ResT> method, CallOptions callOptions) {
+            this.method = method;
+            this.callOptions = callOptions;
+        }
+
+        @Override
+        ClientCall<ReqT, ResT> delegateFor(ReqT payload) {
+            String key = payload != null ? keyExtractor.apply(payload) : null;
+            Backend backend = key != null ? selectConsistentHash(key) : select();
+            return trackingCall(backend, backend.channel.newCall(method, callOptions));
+        }
+    }
+
+    private void onResult(Backend backend, long latencyNanos, Status status) {
+        backend.recordLatency(latencyNanos);
+        if (outlierDetection == null) {
+            return;
+        }
+        backend.calls.record(false);
+        if (!ErrorException.isClientError(status.getCode())) {
+            // Client errors would dilute the server error rate
+            backend.outcomes.record(!status.isOk());
+        }
+        long now = ticker.read();
+        if (!backend.isEjected(now) && isOutlier(backend, now)) {
+            eject(backend, now);
+        }
+    }
+
+    private boolean isOutlier(Backend backend, long now) {
+        long outcomes = backend.outcomes.count();
+        if (outcomes >= outlierDetection.minimumCalls
+            && backend.outcomes.hits() >= outlierDetection.errorRate * outcomes) {
+            return true;
+        }
+        if (outlierDetection.latencyFactor == 0 || backend.calls.count() < outlierDetection.minimumCalls) {
+            return false;
+        }
+        long total = 0;
+        int others = 0;
+        for (Backend other : backends) {
+            long latency = other.ewmaNanos.get();
+            if (other != backend && latency > 0 && !other.isEjected(now)) {
+                total += latency;
+                others++;
+            }
+        }
+        return others > 0 && backend.ewmaNanos.get() > outlierDetection.latencyFactor * total / others;
+    }
+
+    private void eject(Backend backend, long now) {
+        int ejected = 0;
+        for (Backend other : backends) {
+            if (other.isEjected(now)) {
+                ejected++;
+            }
+        }
+        if (ejected + 1 > outlierDetection.maxEjectedFraction * backends.size()) {
+            return;
+        }
+        long until = backend.ejectedUntil.get();
+        long ejectionNanos = outlierDetection.baseEjectionNanos
+            * Math.min(backend.ejections.get() + 1, maxEjectionMultiplier);
+        if (until <= now && backend.ejectedUntil.compareAndSet(until, now + ejectionNanos)) {
+            // Start afresh when the backend returns rather than ejecting it again on stale samples
+            backend.ejections.incrementAndGet();
+            backend.calls.reset();
+            backend.outcomes.reset();
+            backend.ewmaNanos.set(0);
+            ejections.increment();
+        }
+    }
+
+    private static final class Backend {
+        final SocketAddress address;
+        final Channel channel;
+        // Calls answered, and of those the server outcomes with server errors as hits
+        final SlidingWindow calls;
+        final SlidingWindow outcomes;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicLong ewmaNanos = new AtomicLong();
+        final AtomicLong ejectedUntil = new AtomicLong(Long.MIN_VALUE);
+        final AtomicInteger ejections = new AtomicInteger();
+
+        Backend(SocketAddress address, Channel channel, SlidingWindow calls, SlidingWindow outcomes) {
+            this.address = address;
+            this.channel = channel;
+            this.calls = calls;
+            this.outcomes = outcomes;
+        }
+
+        boolean isEjected(long now) {
+            return ejectedUntil.get() > now;
+        }
+
+        /**
+         * Expected cost of another call, with both factors offset by one so an idle or unmeasured backend still
+         * compares by the other.
+         */
+        double load() {
+            return (ewmaNanos.get() + 1.0) * (inFlight.get() + 1);
+        }
+
+        /**
+         * Updates the moving average with weight 1/8 for the new sample.
+         */
+        void recordLatency(long nanos) {
+            while (true) {
+                long average = ewmaNanos.get();
+                long updated = average == 0 ? nanos : average + (nanos - average) / 8;
+                if (ewmaNanos.compareAndSet(average, Math.max(1, updated))) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package example;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ChannelImpl;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientInterceptors;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Pool of channels to the same target, so calls are spread over several connections and event loops instead of
+ * multiplexing on one. Each call picks a channel by round robin or by the lowest number of calls in flight.
+ */
+public class ChannelPool implements AutoCloseable {
+    public enum Selection {
+        roundRobin, leastInFlight
+    }
+
+    private final List<ChannelImpl> channels;
+    private final Selection selection;
+    private final AtomicIntegerArray inFlight;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Channel channel;
+
+    public static ChannelPool create(List<ChannelImpl> channels, Selection selection) {
+        if (channels.isEmpty()) {
+            throw new IllegalArgumentException("channels must not be empty");
+        }
+        return new ChannelPool(channels, selection);
+    }
+
+    private ChannelPool(List<ChannelImpl> channels, Selection selection) {
+        this.channels = new ArrayList<>(channels);
+        this.selection = selection;
+        inFlight = new AtomicIntegerArray(channels.size());
+        // Routing interceptor which ignores the channel it's attached to and picks one from the pool per call
+        channel = ClientInterceptors.intercept(channels.get(0), new ClientInterceptor() {
+            @Override
+            public <ReqT, ResT> ClientCall<ReqT, ResT> interceptCall(MethodDescriptor<ReqT, ResT> method,
+                                                                     CallOptions callOptions, Channel next) {
+                int index = select();
+                return trackingCall(index, ChannelPool.this.channels.get(index).newCall(method, callOptions));
+            }
+        });
+    }
+
+    /**
+     * Returns a channel which places each call on one of the pooled channels.
+     */
+    public Channel channel() {
+        return channel;
+    }
+
+    public int size() {
+        return channels.size();
+    }
+
+    public int inFlight(int index) {
+        return inFlight.get(index);
+    }
+
+    private int select() {
+        int size = channels.size();
+        int start = (next.getAndIncrement() & Integer.MAX_VALUE) % size;
+        if (selection == Selection.roundRobin) {
+            return start;
+        }
+        // Scan from the round robin position so ties are spread rather than always landing on the first channel
+        int best = start;
+        int bestInFlight = inFlight.get(start);
+        for (int i = 1; i < size && bestInFlight > 0; i++) {
+            int index = (start + i) % size;
+            int n = inFlight.get(index);
+            if (n < bestInFlight) {
+                best = index;
+                bestInFlight = n;
+            }
+        }
+        return best;
+    }
+
+    private <ReqT, ResT> ClientCall<ReqT, ResT> trackingCall(int index, ClientCall<ReqT, ResT> delegate) {
+        return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, ResT>(delegate) {
+            @Override
+            public void start(Listener<ResT> listener, Metadata.Headers headers) {
+                inFlight.incrementAndGet(index);
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<ResT>(listener) {
+                    @Override
+                    public void onClose(Status status, Metadata.Trailers trailers) {
+                        inFlight.decrementAndGet(index);
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        channels.forEach(ChannelImpl::shutdownNow);
+    }
+}
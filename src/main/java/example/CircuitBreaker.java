@@ -0,0 +1,387 @@
+package example;
+
+import com.google.common.base.Ticker;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free client-side circuit breaker with a circuit per method. A closed circuit counts outcomes in a sliding
+ * window of time buckets and opens when the server error rate crosses the threshold. Client errors such as
+ * accountNotFound aren't counted, so they can't dilute the server error rate. While open, calls fail immediately with
+ * UNAVAILABLE, which the unary call helpers surface as ErrorException. After the open duration a few probe calls
+ * are let through (half-open), closing the circuit if they all succeed and reopening it on the first failure.
+ * <p>
+ * Calls take their permit when they are started, so calls which are created but never started don't hold probes.
+ * Only results of the probes of the current half-open round count towards closing the circuit; probes which are
+ * cancelled are handed back, and if the round hasn't resolved within the half-open timeout, e.g. because probes
+ * never completed, it is written off and a new round of probes is let through.
+ */
+public final class CircuitBreaker {
+    public enum State {
+        closed, open, halfOpen
+    }
+
+    /**
+     * Receives state transitions, e.g. to export them as metrics. Called on the thread which caused the transition.
+     */
+    public interface TransitionListener {
+        void onTransition(MethodDescriptor<?, ?> method, State from, State to);
+    }
+
+    private static final int buckets = 10;
+    // Permits returned by Circuit.tryAcquire(); probe permits are the positive number of their half-open round
+    private static final long rejectedPermit = -1;
+    private static final long closedPermit = 0;
+
+    private final double failureRateThreshold;
+    private final int minimumCalls;
+    private final long windowNanos;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final long halfOpenTimeoutNanos;
+    private final Ticker ticker;
+    private final TransitionListener listener;
+    private final ConcurrentMap<MethodDescriptor<?, ?>, Circuit> circuits = new ConcurrentHashMap<>();
+    private final Map<State, LongAdder> transitions = new EnumMap<>(State.class);
+    private final LongAdder rejected = new LongAdder();
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    private CircuitBreaker(Builder builder) {
+        failureRateThreshold = builder.failureRateThreshold;
+        minimumCalls = builder.minimumCalls;
+        windowNanos = builder.windowNanos;
+        openNanos = builder.openNanos;
+        halfOpenCalls = builder.halfOpenCalls;
+        halfOpenTimeoutNanos = builder.halfOpenTimeoutNanos;
+        ticker = builder.ticker;
+        listener = builder.listener;
+        for (State state : State.values()) {
+            transitions.put(state, new LongAdder());
+        }
+    }
+
+    public State state(MethodDescriptor<?, ?> method) {
+        Circuit circuit = circuits.get(method);
+        return circuit != null ? circuit.state.get() : State.closed;
+    }
+
+    /**
+     * Returns the number of transitions into the state across all methods.
+     */
+    public long transitions(State to) {
+        return transitions.get(to).sum();
+    }
+
+    /**
+     * Returns the number of calls failed fast because their circuit was open.
+     */
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    static boolean isFailure(Status status) {
+        return !status.isOk() && !ErrorException.isClientError(status.getCode());
+    }
+
+    private Circuit circuit(MethodDescriptor<?, ?> method) {
+        Circuit circuit = circuits.get(method);
+        return circuit != null ? circuit : circuits.computeIfAbsent(method, Circuit::new);
+    }
+
+    /**
+     * ClientInterceptor which places each call through its method's circuit.
+     */
+    public ClientInterceptor interceptor() {
+        return new ClientInterceptor() {
+            @Override
+            public <ReqT, ResT> ClientCall<ReqT, ResT> interceptCall(MethodDescriptor<ReqT, ResT> method,
+                                                                     CallOptions callOptions, Channel next) {
+                return new CircuitCall<>(method, callOptions, next);
+            }
+        };
+    }
+
+    /**
+     * Call which takes a permit from its method's circuit when started, creating the real call only if it gets one.
+     */
+    private final class CircuitCall<ReqT, ResT> extends ClientCall<ReqT, ResT> {
+        private final MethodDescriptor<ReqT, ResT> method;
+        private final CallOptions callOptions;
+        private final Channel next;
+        private volatile ClientCall<ReqT, ResT> delegate;
+
+        CircuitCall(MethodDescriptor<ReqT, ResT> method, CallOptions callOptions, Channel next) {
+            this.method = method;
+            this.callOptions = callOptions;
+            this.next = next;
+        }
+
+        @Override
+        public void start(Listener<ResT> listener, Metadata.Headers headers) {
+            Circuit circuit = circuit(method);
+            long permit = circuit.tryAcquire();
+            if (permit == rejectedPermit) {
+                rejected.increment();
+                ClientCall<ReqT, ResT> call =
+                    new RejectedCall<>(Status.UNAVAILABLE.withDescription("Circuit open for " + method.getName()));
+                delegate = call;
+                call.start(listener, headers);
+                return;
+            }
+            ClientCall<ReqT, ResT> call = next.newCall(method, callOptions);
+            delegate = call;
+            call.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<ResT>(listener) {
+                @Override
+                public void onClose(Status status, Metadata.Trailers trailers) {
+                    circuit.onResult(permit, status);
+                    super.onClose(status, trailers);
+                }
+            }, headers);
+        }
+
+        @Override
+        public void request(int numMessages) {
+            delegate.request(numMessages);
+        }
+
+        @Override
+        public void sendPayload(ReqT payload) {
+            delegate.sendPayload(payload);
+        }
+
+        @Override
+        public void halfClose() {
+            delegate.halfClose();
+        }
+
+        @Override
+        public void cancel() {
+            ClientCall<ReqT, ResT> call = delegate;
+            if (call != null) {
+                call.cancel();
+            }
+        }
+    }
+
+    private final class Circuit {
+        private final MethodDescriptor<?, ?> method;
+        private final AtomicReference<State> state = new AtomicReference<>(State.closed);
+        private volatile long openedAt;
+        private volatile long halfOpenedAt;
+        private final AtomicLong round = new AtomicLong();
+        private final AtomicInteger probes = new AtomicInteger();
+        private final AtomicInteger probeSuccesses = new AtomicInteger();
+        private final SlidingWindow window = new SlidingWindow(buckets, windowNanos, ticker);
+
+        Circuit(MethodDescriptor<?, ?> method) {
+            this.method = method;
+        }
+
+        /**
+         * Returns closedPermit, a probe permit tagged with the current half-open round, or rejectedPermit.
+         */
+        long tryAcquire() {
+            State current = state.get();
+            if (current == State.open) {
+                if (ticker.read() - openedAt < openNanos) {
+                    return rejectedPermit;
+                }
+                if (transition(State.open, State.halfOpen)) {
+                    // Other callers see no probes left until the round starts, so at worst they fail fast too
+                    return startRound(round.get());
+                }
+                current = state.get();
+            }
+            if (current == State.halfOpen) {
+                long probeRound = round.get();
+                if (takeProbe()) {
+                    return probeRound;
+                }
+                if (ticker.read() - halfOpenedAt >= halfOpenTimeoutNanos) {
+                    // The round's probes are overdue, so write them off
+                    return startRound(probeRound);
+                }
+                return rejectedPermit;
+            }
+            return current == State.closed ? closedPermit : rejectedPermit;
+        }
+
+        /**
+         * Starts the round after the given one, returning its first probe permit, or rejectedPermit if another
+         * caller started it first.
+         */
+        private long startRound(long previous) {
+            if (!round.compareAndSet(previous, previous + 1)) {
+                return rejectedPermit;
+            }
+            probeSuccesses.set(0);
+            halfOpenedAt = ticker.read();
+            probes.set(halfOpenCalls - 1);
+            return previous + 1;
+        }
+
+        private boolean takeProbe() {
+            int n;
+            do {
+                n = probes.get();
+                if (n <= 0) {
+                    return false;
+                }
+            } while (!probes.compareAndSet(n, n - 1));
+            return true;
+        }
+
+        void onResult(long permit, Status status) {
+            State current = state.get();
+            if (permit == closedPermit) {
+                // Results of calls started before the circuit opened, and client errors including cancellations, are
+                // ignored
+                if (current == State.closed && !ErrorException.isClientError(status.getCode())) {
+                    window.record(isFailure(status));
+                    if (isFailure(status) && failureRateExceeded()) {
+                        open(State.closed);
+                    }
+                }
+                return;
+            }
+            if (current != State.halfOpen || permit != round.get()) {
+                // A probe of an earlier round
+                return;
+            }
+            if (status.getCode() == Status.Code.CANCELLED) {
+                probes.incrementAndGet();
+            } else if (isFailure(status)) {
+                open(State.halfOpen);
+            } else if (probeSuccesses.incrementAndGet() >= halfOpenCalls) {
+                window.reset();
+                transition(State.halfOpen, State.closed);
+            }
+        }
+
+        private void open(State from) {
+            probes.set(0);
+            openedAt = ticker.read();
+            transition(from, State.open);
+        }
+
+        private boolean transition(State from, State to) {
+            if (!state.compareAndSet(from, to)) {
+                return false;
+            }
+            transitions.get(to).increment();
+            if (listener != null) {
+                listener.onTransition(method, from, to);
+            }
+            return true;
+        }
+
+        private boolean failureRateExceeded() {
+            long total = window.count();
+            return total >= minimumCalls && window.hits() >= failureRateThreshold * total;
+        }
+    }
+
+    /**
+     * Builder for CircuitBreaker. Defaults to opening at a 50% server error rate over at least 20 calls in a 10s
+     * window, staying open for 5s, then letting 3 probe calls through, with new probes after 30s if they don't
+     * resolve.
+     */
+    public static final class Builder {
+        private double failureRateThreshold = 0.5;
+        private int minimumCalls = 20;
+        private long windowNanos = TimeUnit.SECONDS.toNanos(10);
+        private long openNanos = TimeUnit.SECONDS.toNanos(5);
+        private int halfOpenCalls = 3;
+        private long halfOpenTimeoutNanos = TimeUnit.SECONDS.toNanos(30);
+        private Ticker ticker = Ticker.systemTicker();
+        private TransitionListener listener;
+
+        private Builder() {}
+
+        /**
+         * Opens the circuit when the fraction of server errors in the window reaches the threshold, once the window
+         * holds at least minimumCalls calls.
+         */
+        public Builder failureRate(double threshold, int minimumCalls) {
+            if (threshold <= 0 || threshold > 1 || minimumCalls < 1) {
+                throw new IllegalArgumentException("invalid failure rate");
+            }
+            this.failureRateThreshold = threshold;
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        /**
+         * Length of the sliding window, which is divided into 10 buckets.
+         */
+        public Builder window(long window, TimeUnit unit) {
+            this.windowNanos = unit.toNanos(window);
+            return this;
+        }
+
+        /**
+         * How long the circuit stays open before letting probe calls through.
+         */
+        public Builder openDuration(long duration, TimeUnit unit) {
+            this.openNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Number of probe calls let through when half-open, all of which must succeed to close the circuit.
+         */
+        public Builder halfOpenCalls(int halfOpenCalls) {
+            if (halfOpenCalls < 1) {
+                throw new IllegalArgumentException("halfOpenCalls must be positive");
+            }
+            this.halfOpenCalls = halfOpenCalls;
+            return this;
+        }
+
+        /**
+         * How long a round of probe calls may go unresolved before it is written off and new probes are let
+         * through. Should exceed the deadline of the calls.
+         */
+        public Builder halfOpenTimeout(long timeout, TimeUnit unit) {
+            if (timeout <= 0) {
+                throw new IllegalArgumentException("timeout must be positive");
+            }
+            this.halfOpenTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        public Builder ticker(Ticker ticker) {
+            this.ticker = Objects.requireNonNull(ticker, "ticker");
+            return this;
+        }
+
+        public Builder transitionListener(TransitionListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        public CircuitBreaker build() {
+            return new CircuitBreaker(this);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package example;
+
+import io.grpc.ClientCall;
+import io.grpc.Metadata;
+import io.grpc.Status;
+
+/**
+ * Call which holds its listener, headers and flow control requests until the first request message, or half-close
+ * without one, picks the call to delegate to. The delegate is started with the held listener and headers.
+ * <p>
+ * cancel() may come from any thread and closes the listener with CANCELLED exactly once: directly if no delegate
+ * has been picked, otherwise through the delegate. A delegate picked while a cancel was in progress is cancelled
+ * once it has started.
+ */
+abstract class DelayedCall<ReqT, ResT> extends ClientCall<ReqT, ResT> {
+    private Listener<ResT> listener;
+    private Metadata.Headers headers;
+    private volatile ClientCall<ReqT, ResT> delegate;
+    // Guarded by this
+    private int requested;
+    private boolean routing;
+    private boolean cancelled;
+
+    /**
+     * Returns the call to delegate to, given the first request message or null if the call half-closed without
+     * one. Called at most once, on the caller's thread.
+     */
+    abstract ClientCall<ReqT, ResT> delegateFor(ReqT payload);
+
+    Listener<ResT> listener() {
+        return listener;
+    }
+
+    @Override
+    public void start(Listener<ResT> listener, Metadata.Headers headers) {
+        boolean cancelledEarly;
+        synchronized (this) {
+            this.listener = listener;
+            this.headers = headers;
+            cancelledEarly = cancelled;
+        }
+        if (cancelledEarly) {
+            listener.onClose(Status.CANCELLED, new Metadata.Trailers());
+        }
+    }
+
+    @Override
+    public void request(int numMessages) {
+        ClientCall<ReqT, ResT> call = delegate;
+        if (call == null) {
+            synchronized (this) {
+                call = delegate;
+                if (call == null) {
+                    requested += numMessages;
+                    return;
+                }
+            }
+        }
+        call.request(numMessages);
+    }
+
+    @Override
+    public void sendPayload(ReqT payload) {
+        ClientCall<ReqT, ResT> call = route(payload);
+        if (call != null) {
+            call.sendPayload(payload);
+        }
+    }
+
+    @Override
+    public void halfClose() {
+        ClientCall<ReqT, ResT> call = route(null);
+        if (call != null) {
+            call.halfClose();
+        }
+    }
+
+    @Override
+    public void cancel() {
+        ClientCall<ReqT, ResT> call;
+        boolean closeListener;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            call = delegate;
+            // While routing, the delegate is cancelled once it has started
+            closeListener = call == null && !routing && listener != null;
+        }
+        if (call != null) {
+            call.cancel();
+        } else if (closeListener) {
+            listener.onClose(Status.CANCELLED, new Metadata.Trailers());
+        }
+    }
+
+    /**
+     * Returns the delegate, picking and starting it first if needed, or null if the call was cancelled before one was
+     * picked.
+     */
+    private ClientCall<ReqT, ResT> route(ReqT payload) {
+        ClientCall<ReqT, ResT> call = delegate;
+        if (call != null) {
+            return call;
+        }
+        synchronized (this) {
+            if (cancelled) {
+                return null;
+            }
+            routing = true;
+        }
+        try {
+            call = delegateFor(payload);
+            call.start(listener, headers);
+        } catch (RuntimeException e) {
+            boolean cancelledWhileRouting;
+            synchronized (this) {
+                routing = false;
+                cancelledWhileRouting = cancelled;
+            }
+            if (cancelledWhileRouting) {
+                listener.onClose(Status.CANCELLED, new Metadata.Trailers());
+            }
+            throw e;
+        }
+        int pending;
+        boolean cancelledWhileRouting;
+        synchronized (this) {
+            delegate = call;
+            pending = requested;
+            cancelledWhileRouting = cancelled;
+        }
+        if (pending > 0) {
+            call.request(pending);
+        }
+        if (cancelledWhileRouting) {
+            call.cancel();
+        }
+        return call;
+    }
+}
@@ -4,12 +4,32 @@ import io.grpc.Status;
 import io.grpc.StatusException;
 import io.grpc.StatusRuntimeException;
 
+import java.util.EnumMap;
+import java.util.Map;
+
 /**
  * Extends StatusRuntimeException with support for additional application error status information.
  */
 public class ErrorException extends StatusRuntimeException {
+    private static volatile boolean stacklessClientErrors;
+
+    private static final Map<ErrorStatus.Code, ErrorException> sharedClientErrors = sharedClientErrors();
+
     private final ErrorStatus errorStatus;
 
+    /**
+     * Enables or disables stackless mode for client errors. When enabled, exceptions whose status is a client error
+     * (see {@link #isClientError()}) don't capture a stack trace, and message-less client errors created by
+     * {@link #forErrorStatus} are shared per error code. Server errors always capture a stack trace.
+     */
+    public static void setStacklessClientErrors(boolean enabled) {
+        stacklessClientErrors = enabled;
+    }
+
+    public static boolean isStacklessClientErrors() {
+        return stacklessClientErrors;
+    }
+
     public static ErrorException fromThrowable(Throwable e) {
         if (e instanceof ErrorException) {
             return (ErrorException) e;
@@ -22,14 +42,29 @@ public class ErrorException extends StatusRuntimeException {
         }
     }
 
+    /**
+     * Returns an ErrorException for the status, including error information if it was attached to the status with
+     * attach().
+     */
     public static ErrorException forStatus(Status status) {
-        return new ErrorException(status, null);
+        Attachment attachment = attachment(status);
+        return attachment != null ? create(attachment.status, attachment.errorStatus) : create(status, null);
+    }
+
+    public static ErrorException forStatus(Status status, ErrorStatus errorStatus) {
+        return create(status, errorStatus);
     }
 
     public static ErrorException forErrorStatus(ErrorStatus errorStatus) {
+        if (stacklessClientErrors && errorStatus.message() == null) {
+            ErrorException shared = sharedClientErrors.get(errorStatus.code());
+            if (shared != null) {
+                return shared;
+            }
+        }
         Status status = toStatus(errorStatus.code())
             .withDescription(errorStatus.message());
-        return forStatus(status).withErrorStatus(errorStatus);
+        return create(status, errorStatus);
     }
 
     private static Status toStatus(ErrorStatus.Code code) {
@@ -44,21 +79,63 @@ public class ErrorException extends StatusRuntimeException {
         }
     }
 
+    private static ErrorException create(Status status, ErrorStatus errorStatus) {
+        if (stacklessClientErrors && isClientError(status.getCode())) {
+            return new Stackless(status, errorStatus);
+        }
+        return new ErrorException(status, errorStatus);
+    }
+
+    private static Map<ErrorStatus.Code, ErrorException> sharedClientErrors() {
+        Map<ErrorStatus.Code, ErrorException> errors = new EnumMap<>(ErrorStatus.Code.class);
+        for (ErrorStatus.Code code : ErrorStatus.Code.values()) {
+            Status status = toStatus(code);
+            if (isClientError(status.getCode())) {
+                errors.put(code, new Stackless(status, ErrorStatus.forCode(code)));
+            }
+        }
+        return errors;
+    }
+
     private ErrorException(Status status, ErrorStatus errorStatus) {
         super(status);
         this.errorStatus = errorStatus;
     }
 
+    /**
+     * Returns the status with error information attached as its cause, so it survives code which only passes the
+     * Status along, such as ServerCalls and ClientCalls. The cause is never sent over the wire.
+     */
+    static Status attach(Status status, ErrorStatus errorStatus) {
+        return status.withCause(new Attachment(status, errorStatus));
+    }
+
+    static Attachment attachment(Status status) {
+        return status.getCause() instanceof Attachment ? (Attachment) status.getCause() : null;
+    }
+
+    /**
+     * Returns an exception whose status carries this exception's status and error information as an attachment. It
+     * only carries the status to the transport, so it never captures a stack trace.
+     */
+    ErrorException attachErrorStatus() {
+        return new Stackless(attach(getStatus(), errorStatus), null);
+    }
+
     public ErrorStatus errorStatus() {
         return errorStatus;
     }
 
     public ErrorException withErrorStatus(ErrorStatus errorStatus) {
-        return new ErrorException(getStatus(), errorStatus);
+        return create(getStatus(), errorStatus);
     }
 
     public boolean isClientError() {
-        switch (getStatus().getCode()) {
+        return isClientError(getStatus().getCode());
+    }
+
+    static boolean isClientError(Status.Code code) {
+        switch (code) {
             case CANCELLED:
             case INVALID_ARGUMENT:
             case NOT_FOUND:
@@ -71,4 +148,42 @@ public class ErrorException extends StatusRuntimeException {
                 return false;
             }
     }
+
+    /**
+     * Error information and original status attached to a status by attach().
+     */
+    static final class Attachment extends RuntimeException {
+        private final Status status;
+        private final ErrorStatus errorStatus;
+
+        private Attachment(Status status, ErrorStatus errorStatus) {
+            super(null, null, false, false);
+            this.status = status;
+            this.errorStatus = errorStatus;
+        }
+
+        Status status() {
+            return status;
+        }
+
+        ErrorStatus errorStatus() {
+            return errorStatus;
+        }
+    }
+
+    /**
+     * ErrorException which skips capturing the stack trace. StatusRuntimeException doesn't expose the Throwable
+     * constructor that disables suppression, so shared instances must not be used as the primary exception of a
+     * try-with-resources block.
+     */
+    private static final class Stackless extends ErrorException {
+        private Stackless(Status status, ErrorStatus errorStatus) {
+            super(status, errorStatus);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
 }
@@ -2,6 +2,7 @@ package example;
 
 import io.grpc.Metadata;
 
+import java.io.ByteArrayOutputStream;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -21,13 +22,55 @@ public class ErrorStatus {
         }
     }
 
+    /**
+     * Metadata encoding written by addHeaders(). Both are always accepted by fromMetadata(), so readers can be
+     * upgraded before writers are switched. Defaults to legacy, which every reader understands.
+     */
+    public enum Encoding {
+        /** Separate error-code-bin and error-message-bin trailers. */
+        legacy,
+        /** Single versioned error-status-bin trailer. */
+        compact
+    }
+
+    private static volatile Encoding encoding = Encoding.legacy;
+    private static volatile Marshallers.Utf8Marshaller messageMarshaller = Marshallers.utf8Marshaller();
+
     private final Code code;
     private final String message;
 
     private static final Metadata.Key<Code> codeKey =
         Metadata.Key.of("error-code-bin", Marshallers.enumMarshaller(Code.class, Code.unknown));
     private static final Metadata.Key<String> messageKey =
-        Metadata.Key.of("error-message-bin", Marshallers.utf8Marshaller());
+        Metadata.Key.of("error-message-bin", new Metadata.BinaryMarshaller<String>() {
+            @Override
+            public byte[] toBytes(String value) {
+                return messageMarshaller.toBytes(value);
+            }
+
+            @Override
+            public String parseBytes(byte[] serialized) {
+                return messageMarshaller.parseBytes(serialized);
+            }
+        });
+    private static final Metadata.Key<ErrorStatus> statusKey =
+        Metadata.Key.of("error-status-bin", new CompactMarshaller());
+
+    /**
+     * Sets the encoding written by addHeaders(). Only switch to compact once every client reading these trailers
+     * understands it, since older readers only parse the legacy trailers.
+     */
+    public static void setEncoding(Encoding encoding) {
+        ErrorStatus.encoding = Objects.requireNonNull(encoding, "encoding");
+    }
+
+    /**
+     * Sets the marshaller used to encode and decode error messages in both encodings, e.g.
+     * Marshallers.internedUtf8Marshaller(int) so repeated messages decode to shared instances.
+     */
+    public static void setMessageMarshaller(Marshallers.Utf8Marshaller marshaller) {
+        messageMarshaller = Objects.requireNonNull(marshaller, "marshaller");
+    }
 
     public static ErrorStatus forCode(Code code) {
         Objects.requireNonNull(code, "code");
@@ -35,6 +78,10 @@ public class ErrorStatus {
     }
 
     public static Optional<ErrorStatus> fromMetadata(Metadata md) {
+        ErrorStatus status = md.get(statusKey);
+        if (status != null) {
+            return Optional.of(status);
+        }
         Code code = md.get(codeKey);
         return code != null ? Optional.of(new ErrorStatus(code, md.get(messageKey))) : Optional.empty();
     }
@@ -57,6 +104,10 @@ public class ErrorStatus {
     }
 
     public void addHeaders(Metadata md) {
+        if (encoding == Encoding.compact) {
+            md.put(statusKey, this);
+            return;
+        }
         md.put(codeKey, code);
         if (message != null) {
             md.put(messageKey, message);
@@ -70,4 +121,78 @@ public class ErrorStatus {
         ErrorStatus that = (ErrorStatus) o;
         return Objects.equals(code, that.code) && Objects.equals(message, that.message);
     }
+
+    /**
+     * Compact encoding: version byte, varint code ordinal, then varint message length plus one (zero when there's
+     * no message) followed by the UTF-8 message. Decoders ignore trailing bytes so later versions can append fields.
+     * Code ordinals are part of the wire format, so new codes must only be appended.
+     */
+    private static final class CompactMarshaller implements Metadata.BinaryMarshaller<ErrorStatus> {
+        private static final int version = 1;
+        private static final Code[] codes = Code.values();
+        private static final byte[][] messageless = new byte[codes.length][];
+
+        static {
+            for (Code code : codes) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(3);
+                out.write(version);
+                writeVarint(out, code.ordinal());
+                writeVarint(out, 0);
+                messageless[code.ordinal()] = out.toByteArray();
+            }
+        }
+
+        @Override
+        public byte[] toBytes(ErrorStatus value) {
+            if (value.message == null) {
+                return messageless[value.code.ordinal()];
+            }
+            byte[] message = messageMarshaller.toBytes(value.message);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(message.length + 8);
+            out.write(version);
+            writeVarint(out, value.code.ordinal());
+            writeVarint(out, message.length + 1);
+            out.write(message, 0, message.length);
+            return out.toByteArray();
+        }
+
+        @Override
+        public ErrorStatus parseBytes(byte[] serialized) {
+            int[] pos = {1};
+            if (serialized.length < 3 || serialized[0] < version) {
+                return forCode(Code.unknown);
+            }
+            int ordinal = readVarint(serialized, pos);
+            int length = readVarint(serialized, pos);
+            Code code = ordinal >= 0 && ordinal < codes.length ? codes[ordinal] : Code.unknown;
+            if (length <= 0) {
+                return length == 0 ? forCode(code) : forCode(Code.unknown);
+            }
+            if (length - 1 > serialized.length - pos[0]) {
+                return forCode(Code.unknown);
+            }
+            return new ErrorStatus(code, messageMarshaller.parseBytes(serialized, pos[0], length - 1));
+        }
+
+        private static void writeVarint(ByteArrayOutputStream out, int value) {
+            while ((value & ~0x7f) != 0) {
+                out.write((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+
+        /** Returns -1 if the varint is truncated or too long. */
+        private static int readVarint(byte[] bytes, int[] pos) {
+            int value = 0;
+            for (int shift = 0; shift < 32 && pos[0] < bytes.length; shift += 7) {
+                byte b = bytes[pos[0]++];
+                value |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            return -1;
+        }
+    }
 }
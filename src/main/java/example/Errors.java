@@ -1,32 +1,26 @@
 package example;
 
-import com.google.common.util.concurrent.ForwardingListenableFuture;
+import com.google.common.util.concurrent.AbstractFuture;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Uninterruptibles;
 import io.grpc.*;
 import io.grpc.stub.StreamObserver;
 
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class Errors {
-    private static final ThreadLocal<ErrorStatus> currentErrorStatus = new ThreadLocal<>();
-
     private static final Logger logger = Logger.getLogger(Logger.class.getName());
 
-    public static void setCurrentErrorStatus(ErrorStatus error) {
-        currentErrorStatus.set(error);
-    }
-
     /**
      * ServerInterceptor which includes additional error information in error response metadata. Error information
-     * is retrieved from a thread local which must be set before StreamObserver.onError() is called from the service
-     * method. This also assumes that StreamObserver.onError() and ServerCall.Listener.close() are invoked in the
-     * same thread for the thread local passing method to work.
+     * is attached by handleError() to the status passed to StreamObserver.onError(), so it reaches
+     * ServerCall.close() for the same call regardless of which thread completes the call.
      */
     public static ServerInterceptor serverInterceptor() {
         return new ServerInterceptor() {
@@ -36,12 +30,10 @@ public class Errors {
                 return next.startCall(method, new ForwardingServerCall.SimpleForwardingServerCall<ResT>(call) {
                     @Override
                     public void close(Status status, Metadata.Trailers trailers) {
-                        if (!status.isOk()) {
-                            ErrorStatus errorStatus = currentErrorStatus.get();
-                            if (errorStatus != null) {
-                                currentErrorStatus.remove();
-                                errorStatus.addHeaders(trailers);
-                            }
+                        ErrorException.Attachment attachment = ErrorException.attachment(status);
+                        if (attachment != null) {
+                            attachment.errorStatus().addHeaders(trailers);
+                            status = attachment.status();
                         }
                         super.close(status, trailers);
                     }
@@ -50,6 +42,39 @@ public class Errors {
         };
     }
 
+    /**
+     * ClientInterceptor which attaches additional error information from error response metadata to the call's
+     * close status, so ErrorException.fromThrowable() includes it for exceptions thrown or returned by stubs.
+     * Keeps no per-call state outside the call, so it can be added to a channel or stub once and reused.
+     */
+    public static ClientInterceptor errorStatusInterceptor() {
+        return new ClientInterceptor() {
+            @Override
+            public <ReqT, ResT> ClientCall<ReqT, ResT> interceptCall(MethodDescriptor<ReqT, ResT> method,
+                                                                     CallOptions callOptions, Channel next) {
+                return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, ResT>(
+                    next.newCall(method, callOptions)) {
+                    @Override
+                    public void start(Listener<ResT> listener, Metadata.Headers headers) {
+                        super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<ResT>(
+                            listener) {
+                            @Override
+                            public void onClose(Status status, Metadata.Trailers trailers) {
+                                if (!status.isOk()) {
+                                    ErrorStatus errorStatus = ErrorStatus.fromMetadata(trailers).orElse(null);
+                                    if (errorStatus != null) {
+                                        status = ErrorException.attach(status, errorStatus);
+                                    }
+                                }
+                                super.onClose(status, trailers);
+                            }
+                        }, headers);
+                    }
+                };
+            }
+        };
+    }
+
     /**
      * ClientInterceptor which captures additional error information from error response metadata if present.
      */
@@ -85,32 +110,63 @@ public class Errors {
     }
 
     /**
-     * Forwarding future which rethrows StatusRuntimeException as GrpcException including additional error
-     * information from error response metadata if present.
+     * Future which fails with GrpcException including additional error information from error response metadata if
+     * present. Completed directly when the delegate completes, so listeners and callbacks see the ErrorException
+     * too. Cancellation is propagated to the delegate.
      */
     public static <V> ListenableFuture<V> futureWithStatus(Supplier<ErrorStatus> statusSupplier,
                                                            ListenableFuture<V> delegate) {
-        return new ForwardingListenableFuture.SimpleForwardingListenableFuture<V>(delegate) {
-            @Override
-            public V get() throws InterruptedException, ExecutionException {
-                try {
-                    return super.get();
-                } catch (ExecutionException e) {
-                    throw new ExecutionException(e.getMessage(),
-                        ErrorException.fromThrowable(e.getCause()).withErrorStatus(statusSupplier.get()));
-                }
+        return futureWithStatus(delegate, e -> ErrorException.fromThrowable(e).withErrorStatus(statusSupplier.get()));
+    }
+
+    /**
+     * Future which fails with GrpcException including additional error information attached by
+     * errorStatusInterceptor(). Completed directly when the delegate completes, so listeners and callbacks see the
+     * ErrorException too. Cancellation is propagated to the delegate.
+     */
+    public static <V> ListenableFuture<V> futureWithStatus(ListenableFuture<V> delegate) {
+        return futureWithStatus(delegate, ErrorException::fromThrowable);
+    }
+
+    private static <V> ListenableFuture<V> futureWithStatus(ListenableFuture<V> delegate,
+                                                            Function<Throwable, ErrorException> toException) {
+        ErrorFuture<V> future = new ErrorFuture<>(delegate, toException);
+        delegate.addListener(future, MoreExecutors.directExecutor());
+        return future;
+    }
+
+    private static final class ErrorFuture<V> extends AbstractFuture<V> implements Runnable {
+        private final ListenableFuture<V> delegate;
+        private final Function<Throwable, ErrorException> toException;
+
+        ErrorFuture(ListenableFuture<V> delegate, Function<Throwable, ErrorException> toException) {
+            this.delegate = delegate;
+            this.toException = toException;
+        }
+
+        @Override
+        public void run() {
+            if (delegate.isCancelled()) {
+                super.cancel(false);
+                return;
             }
+            try {
+                set(Uninterruptibles.getUninterruptibly(delegate));
+            } catch (ExecutionException e) {
+                setException(toException.apply(e.getCause()));
+            } catch (RuntimeException e) {
+                setException(toException.apply(e));
+            }
+        }
 
-            @Override
-            public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-                try {
-                    return super.get(timeout, unit);
-                } catch (ExecutionException e) {
-                    throw new ExecutionException(e.getMessage(),
-                        ErrorException.fromThrowable(e.getCause()).withErrorStatus(statusSupplier.get()));
-                }
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (super.cancel(mayInterruptIfRunning)) {
+                delegate.cancel(mayInterruptIfRunning);
+                return true;
             }
-        };
+            return false;
+        }
     }
 
     /**
@@ -119,6 +175,20 @@ public class Errors {
      */
     public static <V> StreamObserver<V> streamObserverWithStatus(Supplier<ErrorStatus> statusSupplier,
                                                                  StreamObserver<V> delegate) {
+        return streamObserverWithStatus(delegate,
+            e -> ErrorException.fromThrowable(e).withErrorStatus(statusSupplier.get()));
+    }
+
+    /**
+     * Forwarding StreamObserver which calls StreamObserver.onError with an instance of GrpcException including
+     * additional error information attached by errorStatusInterceptor().
+     */
+    public static <V> StreamObserver<V> streamObserverWithStatus(StreamObserver<V> delegate) {
+        return streamObserverWithStatus(delegate, ErrorException::fromThrowable);
+    }
+
+    private static <V> StreamObserver<V> streamObserverWithStatus(StreamObserver<V> delegate,
+                                                                  Function<Throwable, ErrorException> toException) {
         return new StreamObserver<V>() {
             @Override
             public void onValue(V v) {
@@ -127,7 +197,7 @@ public class Errors {
 
             @Override
             public void onError(Throwable throwable) {
-                delegate.onError(ErrorException.fromThrowable(throwable).withErrorStatus(statusSupplier.get()));
+                delegate.onError(toException.apply(throwable));
             }
 
             @Override
@@ -146,7 +216,6 @@ public class Errors {
         if (!e.isClientError()) {
             logger.log(Level.SEVERE, e.getMessage(), e);
         }
-        Errors.setCurrentErrorStatus(e.errorStatus());
-        responseObserver.onError(e);
+        responseObserver.onError(e.errorStatus() != null ? e.attachErrorStatus() : e);
     }
 }
@@ -2,73 +2,120 @@ package example;
 
 import com.google.common.base.Strings;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.protobuf.Empty;
 import io.grpc.*;
 import io.grpc.MethodDescriptor;
-import io.grpc.stub.ClientCalls;
 import io.grpc.stub.StreamObserver;
 import io.grpc.transport.netty.NegotiationType;
 import io.grpc.transport.netty.NettyChannelBuilder;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioSocketChannel;
 
 import java.net.SocketAddress;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Example client demonstrating various ways to handle application-level error information in error response
  * metadata for different unary call types (blocking, future, async).
  */
 public class ExampleClient implements AutoCloseable {
-    private final ChannelImpl channel;
+    private final List<ChannelImpl> channels;
+    private final Channel channel;
+    private final BackendPool backendPool;
+    private final EventLoopGroup ownedGroup;
     private final ExampleServiceGrpc.ExampleServiceBlockingStub blockingStub;
     private final ExampleServiceGrpc.ExampleServiceFutureStub futureStub;
     private final ExampleServiceGrpc.ExampleServiceStub stub;
 
     public static ExampleClient forAddress(SocketAddress address) {
-        ChannelImpl channel = NettyChannelBuilder.forAddress(address)
-            .channelType(NioSocketChannel.class).negotiationType(NegotiationType.PLAINTEXT).build();
-        return new ExampleClient(channel);
+        return newBuilder(address).build();
     }
 
-    private ExampleClient(ChannelImpl channel) {
-        this.channel = channel;
-        blockingStub = ExampleServiceGrpc.newBlockingStub(channel);
-        futureStub = ExampleServiceGrpc.newFutureStub(channel);
-        stub = ExampleServiceGrpc.newStub(channel);
+    /**
+     * Creates a client which spreads calls across several backends serving the same service.
+     */
+    public static ExampleClient forAddresses(List<SocketAddress> addresses) {
+        return newBuilder(addresses).build();
+    }
+
+    public static Builder newBuilder(SocketAddress address) {
+        return new Builder(Collections.singletonList(address));
+    }
+
+    public static Builder newBuilder(List<SocketAddress> addresses) {
+        if (addresses.isEmpty()) {
+            throw new IllegalArgumentException("addresses must not be empty");
+        }
+        return new Builder(new ArrayList<>(addresses));
+    }
+
+    /**
+     * Creates an event loop group which can be shared by many clients with Builder.eventLoopGroup(), using the
+     * native epoll transport if requested and available. The caller owns the group.
+     */
+    public static EventLoopGroup newEventLoopGroup(int threads, boolean nativeTransport) {
+        return nativeTransport && Epoll.isAvailable() ? new EpollEventLoopGroup(threads) : new NioEventLoopGroup(threads);
+    }
+
+    private ExampleClient(List<ChannelImpl> channels, Channel channel, BackendPool backendPool,
+                          List<ClientInterceptor> interceptors, EventLoopGroup ownedGroup) {
+        this.channels = channels;
+        this.channel = ClientInterceptors.intercept(channel, interceptors);
+        this.backendPool = backendPool;
+        this.ownedGroup = ownedGroup;
+        Channel stubChannel = ClientInterceptors.intercept(this.channel, Errors.errorStatusInterceptor());
+        blockingStub = ExampleServiceGrpc.newBlockingStub(stubChannel);
+        futureStub = ExampleServiceGrpc.newFutureStub(stubChannel);
+        stub = ExampleServiceGrpc.newStub(stubChannel);
+    }
+
+    /**
+     * Returns the pool of backends calls are spread across, if the client was created with several addresses.
+     */
+    public Optional<BackendPool> backendPool() {
+        return Optional.ofNullable(backendPool);
     }
 
     //
-    // Demonstrate capturing additional error information from metadata using original stub methods.
-    // Definitely not as convenient as using direct unary calls (see below).
+    // Demonstrate capturing additional error information from metadata using original stub methods. The stubs are
+    // built once on a channel with Errors.errorStatusInterceptor(), which attaches the error information to the
+    // call's status so ErrorException.fromThrowable() can recover it. Still not as convenient as using direct
+    // unary calls (see below).
     //
 
     public void generateErrorBlockingStub(ErrorStatus errorStatus) {
-        AtomicReference<ErrorStatus> status = new AtomicReference<>();
         try {
-            blockingStub.withInterceptors(Errors.clientInterceptor(status::set))
-                .generateError(errorRequest(errorStatus));
+            blockingStub.generateError(errorRequest(errorStatus));
         } catch (Throwable e) {
-            throw ErrorException.fromThrowable(e).withErrorStatus(status.get());
+            throw ErrorException.fromThrowable(e);
         }
     }
 
     public ListenableFuture<Empty> generateErrorFutureStub(ErrorStatus errorStatus) {
-        AtomicReference<ErrorStatus> status = new AtomicReference<>();
-        ListenableFuture<Empty> future = futureStub.withInterceptors(Errors.clientInterceptor(status::set))
-            .generateError(errorRequest(errorStatus));
-        return Errors.futureWithStatus(status::get, future);
+        return Errors.futureWithStatus(futureStub.generateError(errorRequest(errorStatus)));
     }
 
     public void generateErrorAsyncStub(ErrorStatus errorStatus, StreamObserver<Empty> observer) {
-        AtomicReference<ErrorStatus> status = new AtomicReference<>();
-        stub.withInterceptors(Errors.clientInterceptor(status::set))
-            .generateError(errorRequest(errorStatus), Errors.streamObserverWithStatus(status::get, observer));
+        stub.generateError(errorRequest(errorStatus), Errors.streamObserverWithStatus(observer));
     }
 
     //
     // Demonstrate capturing additional error information from metadata using direct unary calls. Clearly
-    // much easier than using the stubs directly since a lot of the work can be shared.
+    // much easier than using the stubs directly since a lot of the work can be shared. UnaryCalls reads the
+    // error information in the call listener itself, so no per-call capturing state is needed.
     //
 
     public void generateErrorBlockingUnaryCall(ErrorStatus errorStatus) {
@@ -79,30 +126,30 @@ public class ExampleClient implements AutoCloseable {
         return futureUnaryCall(ExampleServiceGrpc.METHOD_GENERATE_ERROR, errorRequest(errorStatus));
     }
 
+    public CompletableFuture<Empty> generateErrorCompletableUnaryCall(ErrorStatus errorStatus) {
+        return completableUnaryCall(ExampleServiceGrpc.METHOD_GENERATE_ERROR, errorRequest(errorStatus));
+    }
+
     public void generateErrorAsyncUnaryCall(ErrorStatus errorStatus, StreamObserver<Empty> observer) {
         asyncUnaryCall(ExampleServiceGrpc.METHOD_GENERATE_ERROR, errorRequest(errorStatus), observer);
     }
 
     private <ReqT, ResT> ResT blockingUnaryCall(MethodDescriptor<ReqT, ResT> method, ReqT param) {
-        AtomicReference<ErrorStatus> status = new AtomicReference<>();
-        try {
-            return ClientCalls.blockingUnaryCall(capturingCall(status::set, method), param);
-        } catch (StatusRuntimeException e) {
-            throw ErrorException.forStatus(e.getStatus()).withErrorStatus(status.get());
-        }
+        return UnaryCalls.blockingUnaryCall(channel.newCall(method, CallOptions.DEFAULT), param);
     }
 
     public <ReqT, ResT> ListenableFuture<ResT> futureUnaryCall(MethodDescriptor<ReqT, ResT> method, ReqT param) {
-        AtomicReference<ErrorStatus> status = new AtomicReference<>();
-        ListenableFuture<ResT> future = ClientCalls.futureUnaryCall(capturingCall(status::set, method), param);
-        return Errors.futureWithStatus(status::get, future);
+        return UnaryCalls.futureUnaryCall(channel.newCall(method, CallOptions.DEFAULT), param);
+    }
+
+    public <ReqT, ResT> CompletableFuture<ResT> completableUnaryCall(MethodDescriptor<ReqT, ResT> method,
+                                                                     ReqT param) {
+        return UnaryCalls.completableUnaryCall(channel.newCall(method, CallOptions.DEFAULT), param);
     }
 
     public <ReqT, ResT> void asyncUnaryCall(MethodDescriptor<ReqT, ResT> method,
                                             ReqT param, StreamObserver<ResT> observer) {
-        AtomicReference<ErrorStatus> status = new AtomicReference<>();
-        ClientCalls.asyncUnaryCall(capturingCall(status::set, method),
-            param, Errors.streamObserverWithStatus(status::get, observer));
+        UnaryCalls.asyncUnaryCall(channel.newCall(method, CallOptions.DEFAULT), param, observer);
     }
 
     public <ReqT, ResT> ClientCall<ReqT, ResT> capturingCall(Consumer<ErrorStatus> statusConsumer,
@@ -119,6 +166,217 @@ public class ExampleClient implements AutoCloseable {
 
     @Override
     public void close() {
-        channel.shutdownNow();
+        channels.forEach(ChannelImpl::shutdownNow);
+        if (ownedGroup != null) {
+            ownedGroup.shutdownGracefully();
+        }
+    }
+
+    /**
+     * Builder for ExampleClient transport configuration.
+     * <p>
+     * Interceptors added by retryPolicy(), hedgingPolicy(), circuitBreaker(), adaptiveThrottle(), notFoundCache()
+     * and requestCoalescer() apply in the order of the builder calls, the first added being the outermost. Order
+     * matters: e.g. a retry policy added before a circuit breaker retries calls the breaker fails fast, while one
+     * added after it retries underneath the breaker, which then sees only the final outcome; and a not found cache
+     * added before a request coalescer answers cached repeats without joining a shared call.
+     */
+    public static final class Builder {
+        private final List<SocketAddress> addresses;
+        private boolean nativeTransport;
+        private EventLoopGroup eventLoopGroup;
+        private ExecutorService executor;
+        private boolean directExecutor;
+        private int channels = 1;
+        private int ioThreads;
+        private ChannelPool.Selection selection = ChannelPool.Selection.roundRobin;
+        private final List<ClientInterceptor> interceptors = new ArrayList<>();
+        private BackendPool.Balancer balancer = BackendPool.Balancer.roundRobin;
+        private Function<Object, String> keyExtractor;
+        private OutlierDetection outlierDetection;
+
+        private Builder(List<SocketAddress> addresses) {
+            this.addresses = addresses;
+        }
+
+        /**
+         * Uses the native epoll transport when available, falling back to NIO. Ignored if an event loop group is
+         * given, in which case the transport matches the group.
+         */
+        public Builder nativeTransport(boolean nativeTransport) {
+            this.nativeTransport = nativeTransport;
+            return this;
+        }
+
+        /**
+         * Event loop group shared with other clients, e.g. from ExampleClient.newEventLoopGroup(). Not shut down
+         * when the client is closed.
+         */
+        public Builder eventLoopGroup(EventLoopGroup eventLoopGroup) {
+            this.eventLoopGroup = eventLoopGroup;
+            return this;
+        }
+
+        /**
+         * Executor for call callbacks shared with other clients. Not shut down when the client is closed.
+         */
+        public Builder executor(ExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Runs call callbacks on the transport event loop instead of handing them to an executor. Intended for
+         * blocking calls from virtual threads: completing a call then only unparks the waiting virtual thread, with
+         * no executor thread or per-call executor in between, and the wait parks on a lock rather than a monitor so
+         * the carrier thread isn't pinned. Async observers and future callbacks must not block in this mode.
+         */
+        public Builder directExecutor(boolean directExecutor) {
+            this.directExecutor = directExecutor;
+            return this;
+        }
+
+        /**
+         * Number of channels, i.e. connections, to open to each backend. Calls are spread across them using the
+         * selection strategy.
+         */
+        public Builder channels(int channels, ChannelPool.Selection selection) {
+            if (channels < 1) {
+                throw new IllegalArgumentException("channels must be positive");
+            }
+            this.channels = channels;
+            this.selection = Objects.requireNonNull(selection, "selection");
+            return this;
+        }
+
+        /**
+         * Number of I/O threads in the event loop group the client creates when it uses the native transport, or
+         * when this is set. Defaults to Netty's default, twice the number of cores. Ignored if an event loop group
+         * is given.
+         */
+        public Builder ioThreads(int ioThreads) {
+            if (ioThreads < 1) {
+                throw new IllegalArgumentException("ioThreads must be positive");
+            }
+            this.ioThreads = ioThreads;
+            return this;
+        }
+
+        /**
+         * Retries failed unary calls according to the policy. Retries are placed on the pooled channels, so a retry
+         * may go over a different connection than the original call.
+         */
+        public Builder retryPolicy(RetryPolicy retryPolicy) {
+            interceptors.add(retryPolicy.interceptor());
+            return this;
+        }
+
+        /**
+         * Hedges slow unary calls according to the policy, sending further copies over the pooled channels.
+         */
+        public Builder hedgingPolicy(HedgingPolicy hedgingPolicy) {
+            interceptors.add(hedgingPolicy.interceptor());
+            return this;
+        }
+
+        /**
+         * Fails calls fast while the circuit breaker holds their method's circuit open.
+         */
+        public Builder circuitBreaker(CircuitBreaker circuitBreaker) {
+            interceptors.add(circuitBreaker.interceptor());
+            return this;
+        }
+
+        /**
+         * Rejects calls locally with the adaptive throttle's probability while the server is shedding load.
+         */
+        public Builder adaptiveThrottle(AdaptiveThrottle adaptiveThrottle) {
+            interceptors.add(adaptiveThrottle.interceptor());
+            return this;
+        }
+
+        /**
+         * Fails repeated requests for missing accounts or devices locally from the cache.
+         */
+        public Builder notFoundCache(NotFoundCache notFoundCache) {
+            interceptors.add(notFoundCache.interceptor());
+            return this;
+        }
+
+        /**
+         * Sends only one of several identical unary calls in flight at once, sharing its result with the others.
+         */
+        public Builder requestCoalescer(RequestCoalescer requestCoalescer) {
+            interceptors.add(requestCoalescer.interceptor());
+            return this;
+        }
+
+        /**
+         * How calls are spread across backends when the client has several.
+         */
+        public Builder balancer(BackendPool.Balancer balancer) {
+            this.balancer = Objects.requireNonNull(balancer, "balancer");
+            return this;
+        }
+
+        /**
+         * Routes calls across backends by consistent hashing of a key extracted from each request message, e.g. an
+         * account or device id, so repeated lookups hit the same backend. Requests for which the extractor returns
+         * null are routed by round robin.
+         */
+        public Builder consistentHash(Function<Object, String> keyExtractor) {
+            this.balancer = BackendPool.Balancer.consistentHash;
+            this.keyExtractor = Objects.requireNonNull(keyExtractor, "keyExtractor");
+            return this;
+        }
+
+        /**
+         * Ejects outlier backends from rotation when the client has several backends.
+         */
+        public Builder outlierDetection(OutlierDetection outlierDetection) {
+            this.outlierDetection = outlierDetection;
+            return this;
+        }
+
+        public ExampleClient build() {
+            EventLoopGroup group = eventLoopGroup;
+            EventLoopGroup ownedGroup = null;
+            if (group == null && (nativeTransport && Epoll.isAvailable() || ioThreads > 0)) {
+                // 0 threads gives Netty's default
+                group = ownedGroup = newEventLoopGroup(ioThreads, nativeTransport);
+            }
+            List<ChannelImpl> built = new ArrayList<>();
+            List<Channel> backends = new ArrayList<>();
+            for (SocketAddress address : addresses) {
+                List<ChannelImpl> pooled = new ArrayList<>();
+                for (int i = 0; i < channels; i++) {
+                    pooled.add(newChannel(address, group));
+                }
+                built.addAll(pooled);
+                backends.add(pooled.size() == 1 ? pooled.get(0) : ChannelPool.create(pooled, selection).channel());
+            }
+            if (backends.size() == 1) {
+                return new ExampleClient(built, backends.get(0), null, interceptors, ownedGroup);
+            }
+            BackendPool pool = BackendPool.create(addresses, backends, balancer, keyExtractor, outlierDetection);
+            return new ExampleClient(built, pool.channel(), pool, interceptors, ownedGroup);
+        }
+
+        private ChannelImpl newChannel(SocketAddress address, EventLoopGroup group) {
+            NettyChannelBuilder builder = NettyChannelBuilder.forAddress(address)
+                .negotiationType(NegotiationType.PLAINTEXT);
+            if (group != null) {
+                builder.eventLoopGroup(group)
+                    .channelType(group instanceof EpollEventLoopGroup ? EpollSocketChannel.class : NioSocketChannel.class);
+            } else {
+                builder.channelType(NioSocketChannel.class);
+            }
+            if (directExecutor) {
+                builder.executor(MoreExecutors.newDirectExecutorService());
+            } else if (executor != null) {
+                builder.executor(executor);
+            }
+            return builder.build();
+        }
     }
 }
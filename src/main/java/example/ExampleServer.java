@@ -4,39 +4,205 @@ import com.google.common.base.Strings;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.protobuf.Empty;
 import io.grpc.ServerImpl;
+import io.grpc.ServerInterceptor;
 import io.grpc.ServerInterceptors;
 import io.grpc.ServerServiceDefinition;
 import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 import io.grpc.transport.netty.NettyServerBuilder;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Logger;
 
 /**
  * Example server and service demonstrating various ways to included application-level error information in error
  * response metadata.
  */
 public class ExampleServer extends AbstractIdleService {
+    private static final Logger logger = Logger.getLogger(ExampleServer.class.getName());
+
     private final int port;
-    private ServerImpl server;
+    private final int acceptors;
+    private final int bossThreads;
+    private final int workerThreads;
+    private final ExecutorService serviceExecutor;
+    private final List<ServerInterceptor> interceptors;
+    private final List<ServerImpl> servers = new ArrayList<>();
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
 
     public static ExampleServer forPort(int port) {
-        return new ExampleServer(port);
+        return newBuilder(port).build();
+    }
+
+    public static Builder newBuilder(int port) {
+        return new Builder(port);
+    }
+
+    private ExampleServer(Builder builder) {
+        this.port = builder.port != 0 ? builder.port : freePort();
+        this.acceptors = builder.acceptors;
+        this.bossThreads = builder.bossThreads;
+        this.workerThreads = builder.workerThreads;
+        this.serviceExecutor = builder.serviceExecutor;
+        this.interceptors = new ArrayList<>(builder.interceptors);
     }
 
-    private ExampleServer(int port) {
-        this.port = port;
+    /**
+     * Returns the port the server listens on, which is chosen when the server is created if 0 was requested.
+     */
+    public int port() {
+        return port;
     }
 
     @Override
     protected void startUp() throws Exception {
-        ServerServiceDefinition service = ExampleServiceGrpc.bindService(new ExampleService());
-        server = NettyServerBuilder.forPort(8080)
-            .addService(ServerInterceptors.intercept(service, Errors.serverInterceptor())).build().start();
+        ServerServiceDefinition service =
+            ServerInterceptors.intercept(ExampleServiceGrpc.bindService(new ExampleService()), Errors.serverInterceptor());
+        if (serviceExecutor != null) {
+            service = ServiceExecutors.intercept(service, serviceExecutor);
+        }
+        if (!interceptors.isEmpty()) {
+            service = ServerInterceptors.intercept(service, interceptors);
+        }
+        int listeners = acceptors;
+        if (listeners > 1 && !Epoll.isAvailable()) {
+            logger.warning("Native epoll transport not available, using a single acceptor");
+            listeners = 1;
+        }
+        boolean epoll = listeners > 1;
+        if (epoll || bossThreads > 0 || workerThreads > 0) {
+            int boss = Math.max(listeners, bossThreads);
+            bossGroup = epoll ? new EpollEventLoopGroup(boss) : new NioEventLoopGroup(boss);
+            workerGroup = epoll ? new EpollEventLoopGroup(workerThreads) : new NioEventLoopGroup(workerThreads);
+        }
+        for (int i = 0; i < listeners; i++) {
+            NettyServerBuilder builder = NettyServerBuilder.forPort(port);
+            if (serviceExecutor != null) {
+                // Calls are handed to the service executor straight from the event loop; see serviceExecutor()
+                builder.executor(ServiceExecutors.direct());
+            }
+            if (bossGroup != null) {
+                builder.bossEventLoopGroup(bossGroup).workerEventLoopGroup(workerGroup)
+                    .channelType(epoll ? ReusePortServerSocketChannel.class : NioServerSocketChannel.class);
+            }
+            servers.add(builder.addService(service).build().start());
+        }
     }
 
     @Override
     protected void shutDown() throws Exception {
-        server.shutdownNow();
-        server.awaitTerminated();
+        for (ServerImpl server : servers) {
+            server.shutdownNow();
+        }
+        for (ServerImpl server : servers) {
+            server.awaitTerminated();
+        }
+        servers.clear();
+        if (bossGroup != null) {
+            bossGroup.shutdownGracefully();
+            workerGroup.shutdownGracefully();
+        }
+    }
+
+    private static int freePort() {
+        // Racy, but ServerImpl doesn't report the port it actually bound
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to find free port", e);
+        }
+    }
+
+    /**
+     * Builder for ExampleServer configuration.
+     */
+    public static final class Builder {
+        private final int port;
+        private int acceptors = 1;
+        private int bossThreads;
+        private int workerThreads;
+        private ExecutorService serviceExecutor;
+        private final List<ServerInterceptor> interceptors = new ArrayList<>();
+
+        private Builder(int port) {
+            this.port = port;
+        }
+
+        /**
+         * Number of listeners bound to the port with SO_REUSEPORT so the kernel spreads accepted connections across
+         * them. Requires the native epoll transport, otherwise a single listener is used.
+         */
+        public Builder acceptors(int acceptors) {
+            if (acceptors < 1) {
+                throw new IllegalArgumentException("acceptors must be positive");
+            }
+            this.acceptors = acceptors;
+            return this;
+        }
+
+        /**
+         * Number of boss event loop threads, raised to the number of acceptors if lower. 0 uses the transport default.
+         */
+        public Builder bossThreads(int bossThreads) {
+            this.bossThreads = bossThreads;
+            return this;
+        }
+
+        /**
+         * Number of worker event loop threads. 0 uses the transport default.
+         */
+        public Builder workerThreads(int workerThreads) {
+            this.workerThreads = workerThreads;
+            return this;
+        }
+
+        /**
+         * Executor which runs ExampleService calls, e.g. one of the ServiceExecutors strategies. The caller owns the
+         * executor. Defaults to the server's shared executor.
+         * <p>
+         * ExampleService is the only service this server hosts, so this is in effect one executor per server. Setting
+         * it also switches the transport executor to ServiceExecutors.direct(), so every call is handed off once,
+         * from the event loop to this executor. A service added without its own ServiceExecutors.intercept() wrapper
+         * would run directly on the event loop, so it must not block.
+         */
+        public Builder serviceExecutor(ExecutorService serviceExecutor) {
+            this.serviceExecutor = serviceExecutor;
+            return this;
+        }
+
+        /**
+         * Additional interceptors which see calls before ExampleService and its error handling, e.g. to inject
+         * faults in tests.
+         */
+        public Builder interceptors(ServerInterceptor... interceptors) {
+            this.interceptors.addAll(Arrays.asList(interceptors));
+            return this;
+        }
+
+        public ExampleServer build() {
+            return new ExampleServer(this);
+        }
+    }
+
+    /**
+     * Epoll server channel with SO_REUSEPORT enabled, instantiated reflectively by the Netty bootstrap.
+     */
+    public static final class ReusePortServerSocketChannel extends EpollServerSocketChannel {
+        public ReusePortServerSocketChannel() {
+            config().setReusePort(true);
+        }
     }
 
     private static class ExampleService implements ExampleServiceGrpc.ExampleService {
@@ -0,0 +1,85 @@
+package example;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Consistent hash ring over backend addresses with a number of virtual nodes per backend. Points are derived from
+ * the addresses alone, so when a backend is added or removed only the keys it owns move.
+ */
+final class HashRing {
+    private static final HashFunction hash = Hashing.murmur3_128();
+
+    private final long[] points;
+    private final int[] owners;
+
+    static HashRing create(List<SocketAddress> addresses, int replicas) {
+        int size = addresses.size() * replicas;
+        long[] hashes = new long[size];
+        int[] indexes = new int[size];
+        for (int i = 0; i < addresses.size(); i++) {
+            for (int r = 0; r < replicas; r++) {
+                hashes[i * replicas + r] = hash(addresses.get(i) + "#" + r);
+                indexes[i * replicas + r] = i;
+            }
+        }
+        // Sort points, carrying their owners along
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+        long[] points = new long[size];
+        int[] owners = new int[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = hashes[order[i]];
+            owners[i] = indexes[order[i]];
+        }
+        return new HashRing(points, owners);
+    }
+
+    static long hash(String key) {
+        return hash.hashString(key, StandardCharsets.UTF_8).asLong();
+    }
+
+    private HashRing(long[] points, int[] owners) {
+        this.points = points;
+        this.owners = owners;
+    }
+
+    /**
+     * Returns the index of the backend owning the key.
+     */
+    int owner(String key) {
+        return owners[start(hash(key))];
+    }
+
+    /**
+     * Walks the ring clockwise from the key and returns the first backend accepted by the filter, or the owner if
+     * none is.
+     */
+    int select(String key, IntPredicate accept) {
+        int start = start(hash(key));
+        for (int i = 0; i < points.length; i++) {
+            int owner = owners[(start + i) % points.length];
+            if (accept.test(owner)) {
+                return owner;
+            }
+        }
+        return owners[start];
+    }
+
+    private int start(long hash) {
+        int index = Arrays.binarySearch(points, hash);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return index == points.length ? 0 : index;
+    }
+}
@@ -0,0 +1,379 @@
+package example;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hedging policy for latency-sensitive unary calls. If a call hasn't completed after the hedging delay, another copy
+ * is sent, up to maxAttempts copies, and the first final result wins while the other copies are cancelled. A result
+ * is final if it succeeded, is a client error, or carries error information, so an accountNotFound answer from
+ * any copy ends the call. Other failures wait for the remaining copies, or send the next one immediately.
+ * <p>
+ * The delay is either fixed or adaptive, tracking a latency percentile per method. Hedges draw on a RetryBudget.
+ */
+public final class HedgingPolicy {
+    private final int maxAttempts;
+    private final long delayNanos;
+    private final double percentile;
+    private final RetryBudget budget;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentMap<String, LatencyTracker> trackers = new ConcurrentHashMap<>();
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    private HedgingPolicy(Builder builder) {
+        maxAttempts = builder.maxAttempts;
+        delayNanos = builder.delayNanos;
+        percentile = builder.percentile;
+        budget = builder.budget;
+        scheduler = builder.scheduler;
+    }
+
+    /**
+     * Returns the delay before hedging a call to the method: the tracked latency percentile once enough calls have
+     * completed if adaptive, otherwise the fixed delay.
+     */
+    public long delayNanos(String method) {
+        if (percentile == 0) {
+            return delayNanos;
+        }
+        long adaptive = tracker(method).percentile(percentile);
+        return adaptive >= 0 ? adaptive : delayNanos;
+    }
+
+    static boolean isFinal(Status status, Metadata.Trailers trailers) {
+        return status.isOk() || ErrorException.isClientError(status.getCode())
+            || ErrorStatus.fromMetadata(trailers).isPresent();
+    }
+
+    private LatencyTracker tracker(String method) {
+        LatencyTracker tracker = trackers.get(method);
+        return tracker != null ? tracker : trackers.computeIfAbsent(method, m -> new LatencyTracker());
+    }
+
+    /**
+     * ClientInterceptor which hedges unary calls according to this policy.
+     */
+    public ClientInterceptor interceptor() {
+        return new ClientInterceptor() {
+            @Override
+            public <ReqT, ResT> ClientCall<ReqT, ResT> interceptCall(MethodDescriptor<ReqT, ResT> method,
+                                                                     CallOptions callOptions, Channel next) {
+                return new HedgingCall<>(method, callOptions, next);
+            }
+        };
+    }
+
+    private final class HedgingCall<ReqT, ResT> extends ClientCall<ReqT, ResT> {
+        private final MethodDescriptor<ReqT, ResT> method;
+        private final CallOptions callOptions;
+        private final Channel next;
+        private Listener<ResT> listener;
+        private Metadata.Headers headers;
+        private ReqT payload;
+        private int requested;
+        private long startNanos;
+        // Guarded by this
+        private final List<ClientCall<ReqT, ResT>> attempts = new ArrayList<>(maxAttempts);
+        private int outstanding;
+        private boolean done;
+        private boolean cancelled;
+        private ScheduledFuture<?> hedge;
+
+        HedgingCall(MethodDescriptor<ReqT, ResT> method, CallOptions callOptions, Channel next) {
+            this.method = method;
+            this.callOptions = callOptions;
+            this.next = next;
+        }
+
+        @Override
+        public void start(Listener<ResT> listener, Metadata.Headers headers) {
+            this.listener = listener;
+            this.headers = headers;
+            budget.onRequest();
+        }
+
+        @Override
+        public void request(int numMessages) {
+            requested += numMessages;
+        }
+
+        @Override
+        public void sendPayload(ReqT payload) {
+            this.payload = payload;
+        }
+
+        @Override
+        public void halfClose() {
+            startNanos = System.nanoTime();
+            attempt(false);
+        }
+
+        @Override
+        public void cancel() {
+            List<ClientCall<ReqT, ResT>> calls;
+            synchronized (this) {
+                if (done || cancelled) {
+                    return;
+                }
+                cancelled = true;
+                cancelHedge();
+                if (attempts.isEmpty()) {
+                    done = true;
+                    calls = null;
+                } else {
+                    calls = new ArrayList<>(attempts);
+                }
+            }
+            if (calls == null) {
+                listener.onClose(Status.CANCELLED, new Metadata.Trailers());
+            } else {
+                // The first attempt to close with CANCELLED is final and delivers it
+                calls.forEach(ClientCall::cancel);
+            }
+        }
+
+        /**
+         * Sends a copy of the call, returning false if none was sent because the call is done or cancelled, all
+         * attempts have been used or, for hedges, the budget is exhausted.
+         */
+        private boolean attempt(boolean hedged) {
+            // Outside the lock, since it may rebuild the latency snapshot
+            long delay = delayNanos(method.getName());
+            ClientCall<ReqT, ResT> call;
+            synchronized (this) {
+                if (done || cancelled || attempts.size() >= maxAttempts) {
+                    return false;
+                }
+                if (hedged && !budget.tryRetry()) {
+                    return false;
+                }
+                call = next.newCall(method, callOptions);
+                attempts.add(call);
+                outstanding++;
+                hedge = attempts.size() < maxAttempts
+                    ? scheduler.schedule(() -> attempt(true), delay, TimeUnit.NANOSECONDS)
+                    : null;
+            }
+            Metadata.Headers attemptHeaders = new Metadata.Headers();
+            attemptHeaders.merge(headers);
+            call.start(new AttemptListener(call), attemptHeaders);
+            call.request(requested);
+            call.sendPayload(payload);
+            call.halfClose();
+            boolean stale;
+            synchronized (this) {
+                stale = done || cancelled;
+            }
+            if (stale) {
+                // Another copy won, or the caller cancelled, before this one started, so its cancel may have been
+                // missed
+                call.cancel();
+            }
+            return true;
+        }
+
+        private void cancelHedge() {
+            if (hedge != null) {
+                hedge.cancel(false);
+                hedge = null;
+            }
+        }
+
+        private final class AttemptListener extends Listener<ResT> {
+            private final ClientCall<ReqT, ResT> call;
+            private Metadata.Headers responseHeaders;
+            private ResT value;
+
+            AttemptListener(ClientCall<ReqT, ResT> call) {
+                this.call = call;
+            }
+
+            @Override
+            public void onHeaders(Metadata.Headers headers) {
+                responseHeaders = headers;
+            }
+
+            @Override
+            public void onPayload(ResT payload) {
+                value = payload;
+            }
+
+            @Override
+            public void onClose(Status status, Metadata.Trailers trailers) {
+                boolean isFinal = isFinal(status, trailers);
+                synchronized (HedgingCall.this) {
+                    outstanding--;
+                    if (done) {
+                        // A copy cancelled because another won
+                        return;
+                    }
+                    if (!isFinal && outstanding > 0) {
+                        return;
+                    }
+                    cancelHedge();
+                }
+                if (!isFinal && attempt(true)) {
+                    return;
+                }
+                List<ClientCall<ReqT, ResT>> losers;
+                synchronized (HedgingCall.this) {
+                    if (done || (!isFinal && outstanding > 0)) {
+                        // Lost a race with a scheduled hedge which is now in flight
+                        return;
+                    }
+                    done = true;
+                    losers = new ArrayList<>(attempts);
+                    losers.remove(call);
+                }
+                losers.forEach(ClientCall::cancel);
+                if (status.getCode() != Status.Code.CANCELLED) {
+                    // Latency of the call as a whole, so a slow first copy which lost to a hedge still counts for
+                    // at least as long as it ran
+                    tracker(method.getName()).record(System.nanoTime() - startNanos);
+                }
+                if (responseHeaders != null) {
+                    listener.onHeaders(responseHeaders);
+                }
+                if (value != null) {
+                    listener.onPayload(value);
+                }
+                listener.onClose(status, trailers);
+            }
+        }
+    }
+
+    /**
+     * Recent latencies of one method in a fixed ring of samples. Recording is a couple of atomic writes; the sorted
+     * copy percentiles are read from is rebuilt lazily, at most once every refreshSamples samples, so percentiles
+     * lag the ring by fewer than that many samples.
+     */
+    static final class LatencyTracker {
+        private static final int size = 256;
+        private static final int minSamples = 64;
+        private static final int refreshSamples = 32;
+
+        private final AtomicLongArray samples = new AtomicLongArray(size);
+        private final AtomicLong count = new AtomicLong();
+        private volatile Snapshot snapshot = new Snapshot(0, new long[0]);
+
+        void record(long nanos) {
+            long n = count.getAndIncrement();
+            samples.set((int) (n & (size - 1)), nanos);
+        }
+
+        /**
+         * Returns the latency at the percentile of the recent samples, or -1 until enough samples have been
+         * recorded.
+         */
+        long percentile(double percentile) {
+            long n = count.get();
+            if (n < minSamples) {
+                return -1;
+            }
+            Snapshot current = snapshot;
+            if (n - current.count >= refreshSamples) {
+                int length = (int) Math.min(n, size);
+                long[] copy = new long[length];
+                for (int i = 0; i < length; i++) {
+                    copy[i] = samples.get(i);
+                }
+                Arrays.sort(copy);
+                snapshot = current = new Snapshot(n, copy);
+            }
+            long[] values = current.sorted;
+            int index = (int) Math.ceil(percentile / 100 * values.length) - 1;
+            return values[Math.max(0, Math.min(values.length - 1, index))];
+        }
+
+        private static final class Snapshot {
+            final long count;
+            final long[] sorted;
+
+            Snapshot(long count, long[] sorted) {
+                this.count = count;
+                this.sorted = sorted;
+            }
+        }
+    }
+
+    /**
+     * Builder for HedgingPolicy. Defaults to 2 attempts with an adaptive p95 delay, 10ms until enough calls have
+     * completed, and a budget of 10% of requests with a burst of 10 hedges.
+     */
+    public static final class Builder {
+        private int maxAttempts = 2;
+        private long delayNanos = TimeUnit.MILLISECONDS.toNanos(10);
+        private double percentile = 95;
+        private RetryBudget budget = RetryBudget.create(0.1, 10);
+        private ScheduledExecutorService scheduler = RetryPolicy.defaultScheduler;
+
+        private Builder() {}
+
+        /**
+         * Maximum number of copies of a call including the original.
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("maxAttempts must be positive");
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Hedges after a fixed delay.
+         */
+        public Builder delay(long delay, TimeUnit unit) {
+            this.delayNanos = unit.toNanos(delay);
+            this.percentile = 0;
+            return this;
+        }
+
+        /**
+         * Hedges after the given latency percentile of recent calls to the same method, using the initial delay
+         * until enough calls have completed.
+         */
+        public Builder adaptiveDelay(double percentile, long initialDelay, TimeUnit unit) {
+            if (percentile <= 0 || percentile > 100) {
+                throw new IllegalArgumentException("percentile must be in (0, 100]");
+            }
+            this.percentile = percentile;
+            this.delayNanos = unit.toNanos(initialDelay);
+            return this;
+        }
+
+        public Builder budget(RetryBudget budget) {
+            this.budget = Objects.requireNonNull(budget, "budget");
+            return this;
+        }
+
+        public Builder scheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = Objects.requireNonNull(scheduler, "scheduler");
+            return this;
+        }
+
+        public HedgingPolicy build() {
+            return new HedgingPolicy(this);
+        }
+    }
+}
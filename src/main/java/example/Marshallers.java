@@ -3,45 +3,161 @@ package example;
 import com.google.common.base.Charsets;
 import io.grpc.Metadata;
 
+import java.util.Arrays;
 import java.util.Objects;
 
 public final class Marshallers {
     private Marshallers() {}
 
+    /**
+     * Marshaller for enum constants by name. Names are encoded once up front and parsed by comparing raw bytes, so
+     * neither direction allocates. Unknown or malformed values parse as defaultValue, or fail if it's null.
+     */
     public static <E extends Enum<E>> Metadata.BinaryMarshaller<E> enumMarshaller(Class<E> enumType, E defaultValue) {
         Objects.requireNonNull(enumType, "enumType");
-        return new Metadata.BinaryMarshaller<E>() {
-            @Override
-            public byte[] toBytes(E value) {
-                return value.name().getBytes(Charsets.UTF_8);
-            }
-
-            @Override
-            public E parseBytes(byte[] serialized) {
-                String name = new String(serialized, Charsets.UTF_8);
-                try {
-                    return Enum.valueOf(enumType, name);
-                } catch (IllegalArgumentException e) {
-                    if (defaultValue != null) {
-                        return defaultValue;
+        return new EnumMarshaller<>(enumType, defaultValue);
+    }
+
+    /**
+     * Marshaller for UTF-8 strings. Pure ASCII values are decoded without going through the UTF-8 decoder.
+     */
+    public static Utf8Marshaller utf8Marshaller() {
+        return new Utf8Marshaller(0);
+    }
+
+    /**
+     * Marshaller for UTF-8 strings which also caches up to maxEntries decoded values (rounded up to a power of two)
+     * keyed by their bytes, so repeated values parse to a shared instance without allocating.
+     */
+    public static Utf8Marshaller internedUtf8Marshaller(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        return new Utf8Marshaller(maxEntries);
+    }
+
+    public static final class Utf8Marshaller implements Metadata.BinaryMarshaller<String> {
+        private static final int maxInternedLength = 256;
+
+        // Direct-mapped cache; entries are immutable so racing reads and writes at worst cause a miss
+        private final Interned[] interned;
+
+        private Utf8Marshaller(int maxEntries) {
+            interned = maxEntries > 0 ? new Interned[Math.max(1, Integer.highestOneBit(maxEntries - 1) << 1)] : null;
+        }
+
+        @Override
+        public byte[] toBytes(String value) {
+            return value.getBytes(Charsets.UTF_8);
+        }
+
+        @Override
+        public String parseBytes(byte[] serialized) {
+            return parseBytes(serialized, 0, serialized.length);
+        }
+
+        public String parseBytes(byte[] serialized, int offset, int length) {
+            if (interned == null || length > maxInternedLength) {
+                return decode(serialized, offset, length);
+            }
+            int hash = 1;
+            for (int i = offset; i < offset + length; i++) {
+                hash = 31 * hash + serialized[i];
+            }
+            int slot = (hash ^ hash >>> 16) & (interned.length - 1);
+            Interned entry = interned[slot];
+            if (entry != null && entry.hash == hash && entry.matches(serialized, offset, length)) {
+                return entry.value;
+            }
+            String value = decode(serialized, offset, length);
+            interned[slot] = new Interned(hash, Arrays.copyOfRange(serialized, offset, offset + length), value);
+            return value;
+        }
+
+        private static String decode(byte[] serialized, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                if (serialized[i] < 0) {
+                    return new String(serialized, offset, length, Charsets.UTF_8);
+                }
+            }
+            return new String(serialized, offset, length, Charsets.ISO_8859_1);
+        }
+
+        private static final class Interned {
+            final int hash;
+            final byte[] bytes;
+            final String value;
+
+            Interned(int hash, byte[] bytes, String value) {
+                this.hash = hash;
+                this.bytes = bytes;
+                this.value = value;
+            }
+
+            boolean matches(byte[] serialized, int offset, int length) {
+                if (bytes.length != length) {
+                    return false;
+                }
+                for (int i = 0; i < length; i++) {
+                    if (bytes[i] != serialized[offset + i]) {
+                        return false;
                     }
-                    throw e;
                 }
+                return true;
             }
-        };
+        }
     }
 
-    public static Metadata.BinaryMarshaller<String> utf8Marshaller() {
-        return new Metadata.BinaryMarshaller<String>() {
-            @Override
-            public byte[] toBytes(String value) {
-                return value.getBytes(Charsets.UTF_8);
+    private static final class EnumMarshaller<E extends Enum<E>> implements Metadata.BinaryMarshaller<E> {
+        private final Class<E> enumType;
+        private final E defaultValue;
+        private final byte[][] names;
+        // Constants indexed by encoded name length, each with its encoded name at the same index in namesByLength
+        private final Object[][] valuesByLength;
+        private final byte[][][] namesByLength;
+
+        EnumMarshaller(Class<E> enumType, E defaultValue) {
+            this.enumType = enumType;
+            this.defaultValue = defaultValue;
+            E[] values = enumType.getEnumConstants();
+            names = new byte[values.length][];
+            int maxLength = 0;
+            for (E value : values) {
+                names[value.ordinal()] = value.name().getBytes(Charsets.UTF_8);
+                maxLength = Math.max(maxLength, names[value.ordinal()].length);
             }
+            valuesByLength = new Object[maxLength + 1][0];
+            namesByLength = new byte[maxLength + 1][0][];
+            for (E value : values) {
+                byte[] name = names[value.ordinal()];
+                int n = valuesByLength[name.length].length;
+                valuesByLength[name.length] = Arrays.copyOf(valuesByLength[name.length], n + 1);
+                namesByLength[name.length] = Arrays.copyOf(namesByLength[name.length], n + 1);
+                valuesByLength[name.length][n] = value;
+                namesByLength[name.length][n] = name;
+            }
+        }
+
+        @Override
+        public byte[] toBytes(E value) {
+            return names[value.ordinal()];
+        }
 
-            @Override
-            public String parseBytes(byte[] serialized) {
-                return new String(serialized, Charsets.UTF_8);
+        @Override
+        public E parseBytes(byte[] serialized) {
+            if (serialized.length < namesByLength.length) {
+                byte[][] candidates = namesByLength[serialized.length];
+                for (int i = 0; i < candidates.length; i++) {
+                    if (candidates[i][0] == serialized[0] && Arrays.equals(candidates[i], serialized)) {
+                        return enumType.cast(valuesByLength[serialized.length][i]);
+                    }
+                }
+            }
+            if (defaultValue != null) {
+                return defaultValue;
             }
-        };
+            throw new IllegalArgumentException(
+                "No enum constant " + enumType.getCanonicalName() + "." + new String(serialized, Charsets.UTF_8));
+        }
     }
 }
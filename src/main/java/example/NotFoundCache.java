@@ -0,0 +1,192 @@
+package example;
+
+import com.google.common.base.Ticker;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client-side negative result cache. Remembers requests the server answered with accountNotFound or deviceNotFound
+ * and fails repeats of them locally with the same status and error status, so callers see an equivalent
+ * ErrorException without a round trip. Requests are identified by method and serialized request message. Entries
+ * expire after a TTL and the cache is bounded with W-TinyLFU eviction. Other errors, in particular server errors,
+ * are never cached.
+ */
+public final class NotFoundCache {
+    private final long ttlNanos;
+    private final Ticker ticker;
+    private final TinyLfuCache<RequestKey, Entry> cache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    private NotFoundCache(Builder builder) {
+        ttlNanos = builder.ttlNanos;
+        ticker = builder.ticker;
+        cache = new TinyLfuCache<>(builder.maximumSize);
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of entries evicted to keep the cache within its maximum size. Expired entries aren't
+     * counted.
+     */
+    public long evictions() {
+        return cache.evictions();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    static boolean isNotFound(Status status, Optional<ErrorStatus> errorStatus) {
+        if (status.getCode() != Status.Code.NOT_FOUND || !errorStatus.isPresent()) {
+            return false;
+        }
+        ErrorStatus.Code code = errorStatus.get().code();
+        return code == ErrorStatus.Code.accountNotFound || code == ErrorStatus.Code.deviceNotFound;
+    }
+
+    private Entry lookup(RequestKey key) {
+        Entry entry = cache.get(key);
+        if (entry != null && entry.expiresAt - ticker.read() <= 0) {
+            cache.remove(key, entry);
+            entry = null;
+        }
+        (entry != null ? hits : misses).increment();
+        return entry;
+    }
+
+    /**
+     * ClientInterceptor which answers cached not found requests locally and caches new not found responses.
+     */
+    public ClientInterceptor interceptor() {
+        return new ClientInterceptor() {
+            @Override
+            public <ReqT, ResT> ClientCall<ReqT, ResT> interceptCall(MethodDescriptor<ReqT, ResT> method,
+                                                                     CallOptions callOptions, Channel next) {
+                return new CachingCall<>(method, callOptions, next);
+            }
+        };
+    }
+
+    private static final class Entry {
+        final Status status;
+        final ErrorStatus errorStatus;
+        final long expiresAt;
+
+        Entry(Status status, ErrorStatus errorStatus, long expiresAt) {
+            this.status = status;
+            this.errorStatus = errorStatus;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Call which waits for the request message before deciding whether to answer from the cache or start the real
+     * call.
+     */
+    private final class CachingCall<ReqT, ResT> extends DelayedCall<ReqT, ResT> {
+        private final MethodDescriptor<ReqT, ResT> method;
+        private final CallOptions callOptions;
+        private final Channel next;
+
+        CachingCall(MethodDescriptor<ReqT, ResT> method, CallOptions callOptions, Channel next) {
+            this.method = method;
+            this.callOptions = callOptions;
+            this.next = next;
+        }
+
+        @Override
+        ClientCall<ReqT, ResT> delegateFor(ReqT payload) {
+            if (payload == null) {
+                // No request message, so nothing to key on
+                return next.newCall(method, callOptions);
+            }
+            RequestKey key = RequestKey.of(method, payload);
+            Entry cached = lookup(key);
+            if (cached != null) {
+                Metadata.Trailers trailers = new Metadata.Trailers();
+                cached.errorStatus.addHeaders(trailers);
+                return new RejectedCall<>(cached.status, trailers);
+            }
+            ClientCall<ReqT, ResT> call = next.newCall(method, callOptions);
+            return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, ResT>(call) {
+                @Override
+                public void start(Listener<ResT> listener, Metadata.Headers headers) {
+                    super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<ResT>(listener) {
+                        @Override
+                        public void onClose(Status status, Metadata.Trailers trailers) {
+                            Optional<ErrorStatus> errorStatus = ErrorStatus.fromMetadata(trailers);
+                            if (isNotFound(status, errorStatus)) {
+                                cache.put(key, new Entry(status, errorStatus.get(), ticker.read() + ttlNanos));
+                            }
+                            super.onClose(status, trailers);
+                        }
+                    }, headers);
+                }
+            };
+        }
+    }
+
+    /**
+     * Builder for NotFoundCache. Defaults to 10000 entries with a TTL of 30 seconds.
+     */
+    public static final class Builder {
+        private int maximumSize = 10000;
+        private long ttlNanos = TimeUnit.SECONDS.toNanos(30);
+        private Ticker ticker = Ticker.systemTicker();
+
+        private Builder() {}
+
+        public Builder maximumSize(int maximumSize) {
+            if (maximumSize < 1) {
+                throw new IllegalArgumentException("maximumSize must be positive");
+            }
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * How long a not found response is reused. Keep it short where accounts or devices may be created, since
+         * until an entry expires the client keeps reporting them as not found.
+         */
+        public Builder ttl(long ttl, TimeUnit unit) {
+            if (ttl <= 0) {
+                throw new IllegalArgumentException("ttl must be positive");
+            }
+            this.ttlNanos = unit.toNanos(ttl);
+            return this;
+        }
+
+        public Builder ticker(Ticker ticker) {
+            this.ticker = Objects.requireNonNull(ticker, "ticker");
+            return this;
+        }
+
+        public NotFoundCache build() {
+            return new NotFoundCache(this);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package example;
+
+import com.google.common.base.Ticker;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings for ejecting outlier backends from a BackendPool. A backend is an outlier once it has completed
+ * minimumCalls calls in the window and either its server error rate reaches the threshold or its average latency is
+ * latencyFactor times that of the other backends. Client errors such as accountNotFound are left out of the error
+ * rate, so they can't dilute it, but count as calls for latency. Ejection lasts the base ejection time multiplied by
+ * the number of times the backend has been ejected, up to 10, and never takes more than the maximum fraction of
+ * backends out of rotation.
+ */
+public final class OutlierDetection {
+    final double errorRate;
+    final int minimumCalls;
+    final double latencyFactor;
+    final long windowNanos;
+    final long baseEjectionNanos;
+    final double maxEjectedFraction;
+    final Ticker ticker;
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    private OutlierDetection(Builder builder) {
+        errorRate = builder.errorRate;
+        minimumCalls = builder.minimumCalls;
+        latencyFactor = builder.latencyFactor;
+        windowNanos = builder.windowNanos;
+        baseEjectionNanos = builder.baseEjectionNanos;
+        maxEjectedFraction = builder.maxEjectedFraction;
+        ticker = builder.ticker;
+    }
+
+    /**
+     * Builder for OutlierDetection. Defaults to a 50% error rate or 3 times the latency of the other backends over
+     * at least 10 calls in a 10s window, 30s base ejection time and at most half the backends ejected.
+     */
+    public static final class Builder {
+        private double errorRate = 0.5;
+        private int minimumCalls = 10;
+        private double latencyFactor = 3;
+        private long windowNanos = TimeUnit.SECONDS.toNanos(10);
+        private long baseEjectionNanos = TimeUnit.SECONDS.toNanos(30);
+        private double maxEjectedFraction = 0.5;
+        private Ticker ticker = Ticker.systemTicker();
+
+        private Builder() {}
+
+        public Builder errorRate(double errorRate, int minimumCalls) {
+            if (errorRate <= 0 || errorRate > 1 || minimumCalls < 1) {
+                throw new IllegalArgumentException("invalid error rate");
+            }
+            this.errorRate = errorRate;
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        /**
+         * Ejects backends whose average latency is this many times the average of the other backends. 0 disables
+         * latency-based ejection.
+         */
+        public Builder latencyFactor(double latencyFactor) {
+            if (latencyFactor != 0 && latencyFactor <= 1) {
+                throw new IllegalArgumentException("latencyFactor must be 0 or greater than 1");
+            }
+            this.latencyFactor = latencyFactor;
+            return this;
+        }
+
+        public Builder window(long window, TimeUnit unit) {
+            this.windowNanos = unit.toNanos(window);
+            return this;
+        }
+
+        public Builder baseEjectionTime(long time, TimeUnit unit) {
+            this.baseEjectionNanos = unit.toNanos(time);
+            return this;
+        }
+
+        public Builder maxEjectedFraction(double maxEjectedFraction) {
+            if (maxEjectedFraction < 0 || maxEjectedFraction >= 1) {
+                throw new IllegalArgumentException("maxEjectedFraction must be in [0, 1)");
+            }
+            this.maxEjectedFraction = maxEjectedFraction;
+            return this;
+        }
+
+        public Builder ticker(Ticker ticker) {
+            this.ticker = Objects.requireNonNull(ticker, "ticker");
+            return this;
+        }
+
+        public OutlierDetection build() {
+            return new OutlierDetection(this);
+        }
+    }
+}
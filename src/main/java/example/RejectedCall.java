@@ -0,0 +1,43 @@
+package example;
+
+import io.grpc.ClientCall;
+import io.grpc.Metadata;
+import io.grpc.Status;
+
+/**
+ * Call which fails with the given status and trailers as soon as it's started, without touching the transport.
+ */
+final class RejectedCall<ReqT, ResT> extends ClientCall<ReqT, ResT> {
+    private final Status status;
+    private final Metadata.Trailers trailers;
+
+    RejectedCall(Status status) {
+        this(status, new Metadata.Trailers());
+    }
+
+    RejectedCall(Status status, Metadata.Trailers trailers) {
+        this.status = status;
+        this.trailers = trailers;
+    }
+
+    @Override
+    public void start(Listener<ResT> listener, Metadata.Headers headers) {
+        listener.onClose(status, trailers);
+    }
+
+    @Override
+    public void request(int numMessages) {
+    }
+
+    @Override
+    public void cancel() {
+    }
+
+    @Override
+    public void halfClose() {
+    }
+
+    @Override
+    public void sendPayload(ReqT payload) {
+    }
+}
@@ -0,0 +1,317 @@
+package example;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces identical in-flight unary calls (single flight). A call whose method and serialized request match a call
+ * still in flight doesn't go out, but waits for the shared call and receives the same headers, response and close
+ * status and trailers, so every waiter sees the same response or an equivalent ErrorException. A waiter cancelling
+ * only detaches it; the shared call is cancelled once no waiters are left. The shared call uses the headers and call
+ * options of the call which started it. Streaming calls aren't coalesced.
+ * <p>
+ * A call only waits for a shared call whose deadline is no earlier than its own, less the deadline tolerance, so
+ * calls made in a burst with the same timeout share a call even though their deadlines differ slightly. A waiter
+ * whose own deadline comes first is detached with DEADLINE_EXCEEDED when it passes. A call with no deadline doesn't
+ * wait for a shared call which has one.
+ */
+public final class RequestCoalescer {
+    private final ConcurrentMap<RequestKey, Flight<?, ?>> flights = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+    private final long deadlineToleranceNanos;
+
+    /**
+     * Creates a coalescer with a deadline tolerance of 10ms.
+     */
+    public static RequestCoalescer create() {
+        return create(10, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a coalescer which lets a call wait for a shared call whose deadline is up to the tolerance earlier
+     * than its own, so the call may see DEADLINE_EXCEEDED that much early.
+     */
+    public static RequestCoalescer create(long deadlineTolerance, TimeUnit unit) {
+        if (deadlineTolerance < 0) {
+            throw new IllegalArgumentException("deadlineTolerance must not be negative");
+        }
+        return new RequestCoalescer(unit.toNanos(deadlineTolerance));
+    }
+
+    private RequestCoalescer(long deadlineToleranceNanos) {
+        this.deadlineToleranceNanos = deadlineToleranceNanos;
+    }
+
+    /**
+     * Returns the number of calls which waited for an identical call instead of going out.
+     */
+    public long coalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Returns the number of shared calls in flight.
+     */
+    public int inFlight() {
+        return flights.size();
+    }
+
+    /**
+     * ClientInterceptor which coalesces identical unary calls.
+     */
+    public ClientInterceptor interceptor() {
+        return new ClientInterceptor() {
+            @Override
+            public <ReqT, ResT> ClientCall<ReqT, ResT> interceptCall(MethodDescriptor<ReqT, ResT> method,
+                                                                     CallOptions callOptions, Channel next) {
+                if (method.getType() != MethodDescriptor.MethodType.UNARY) {
+                    return next.newCall(method, callOptions);
+                }
+                return new CoalescingCall<>(method, callOptions, next);
+            }
+        };
+    }
+
+    /**
+     * Shared call and the calls waiting for it. The response is buffered and delivered to every waiter when the call
+     * closes, which is all a unary caller needs.
+     */
+    private final class Flight<ReqT, ResT> extends ClientCall.Listener<ResT> {
+        private final RequestKey key;
+        private final Long deadlineNanoTime;
+        // Guarded by this
+        private final List<Waiter<ResT>> waiters = new ArrayList<>();
+        private ClientCall<ReqT, ResT> call;
+        private boolean done;
+        private volatile Metadata.Headers responseHeaders;
+        private volatile ResT response;
+
+        Flight(RequestKey key, Long deadlineNanoTime) {
+            this.key = key;
+            this.deadlineNanoTime = deadlineNanoTime;
+        }
+
+        /**
+         * Returns whether a call with the given deadline may wait for this flight.
+         */
+        boolean accepts(Long deadline) {
+            return deadlineNanoTime == null
+                || deadline != null && deadlineNanoTime - (deadline - deadlineToleranceNanos) >= 0;
+        }
+
+        /**
+         * Adds a waiter with the given deadline, returning null if the flight has already finished. The waiter
+         * leaves with DEADLINE_EXCEEDED when its deadline passes if that's before the flight's.
+         */
+        synchronized Waiter<ResT> join(ClientCall.Listener<ResT> listener, Long deadline) {
+            if (done) {
+                return null;
+            }
+            Waiter<ResT> waiter = new Waiter<>(listener);
+            waiters.add(waiter);
+            if (deadline != null && (deadlineNanoTime == null || deadline - deadlineNanoTime < 0)) {
+                waiter.timer = RetryPolicy.defaultScheduler.schedule(
+                    () -> leave(waiter, Status.DEADLINE_EXCEEDED), deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            }
+            return waiter;
+        }
+
+        void start(MethodDescriptor<ReqT, ResT> method, CallOptions callOptions, Channel next,
+                   Metadata.Headers headers, ReqT payload) {
+            ClientCall<ReqT, ResT> call;
+            try {
+                call = next.newCall(method, callOptions);
+                call.start(this, headers);
+            } catch (RuntimeException e) {
+                // Fail the waiters rather than leave them waiting for a call which never started
+                onClose(Status.INTERNAL.withCause(e).withDescription("Failed to start shared call"),
+                    new Metadata.Trailers());
+                return;
+            }
+            boolean finished;
+            synchronized (this) {
+                finished = done;
+                this.call = call;
+            }
+            if (finished) {
+                // Every waiter left while the call was starting, or it closed straight away
+                call.cancel();
+                return;
+            }
+            call.request(1);
+            call.sendPayload(payload);
+            call.halfClose();
+        }
+
+        /**
+         * Detaches a waiter, closing it with the given status and cancelling the shared call if it was the last one.
+         */
+        void leave(Waiter<ResT> waiter, Status status) {
+            boolean last;
+            ClientCall<ReqT, ResT> abandoned;
+            synchronized (this) {
+                if (done || !waiters.remove(waiter)) {
+                    return;
+                }
+                last = waiters.isEmpty();
+                done = last;
+                abandoned = call;
+            }
+            waiter.cancelTimer();
+            waiter.listener.onClose(status, new Metadata.Trailers());
+            if (last) {
+                flights.remove(key, this);
+                if (abandoned != null) {
+                    abandoned.cancel();
+                }
+            }
+        }
+
+        @Override
+        public void onHeaders(Metadata.Headers headers) {
+            responseHeaders = headers;
+        }
+
+        @Override
+        public void onPayload(ResT payload) {
+            response = payload;
+        }
+
+        @Override
+        public void onClose(Status status, Metadata.Trailers trailers) {
+            List<Waiter<ResT>> finished;
+            synchronized (this) {
+                done = true;
+                finished = new ArrayList<>(waiters);
+                waiters.clear();
+            }
+            flights.remove(key, this);
+            for (Waiter<ResT> waiter : finished) {
+                waiter.cancelTimer();
+                if (responseHeaders != null) {
+                    waiter.listener.onHeaders(responseHeaders);
+                }
+                if (response != null) {
+                    waiter.listener.onPayload(response);
+                }
+                waiter.listener.onClose(status, trailers);
+            }
+        }
+    }
+
+    private static final class Waiter<ResT> {
+        final ClientCall.Listener<ResT> listener;
+        // Set under the flight's lock before the waiter can leave
+        ScheduledFuture<?> timer;
+
+        Waiter(ClientCall.Listener<ResT> listener) {
+            this.listener = listener;
+        }
+
+        void cancelTimer() {
+            if (timer != null) {
+                timer.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Call which waits for the request message, then joins an identical call in flight or starts a new shared call.
+     */
+    private final class CoalescingCall<ReqT, ResT> extends DelayedCall<ReqT, ResT> {
+        private final MethodDescriptor<ReqT, ResT> method;
+        private final CallOptions callOptions;
+        private final Channel next;
+
+        CoalescingCall(MethodDescriptor<ReqT, ResT> method, CallOptions callOptions, Channel next) {
+            this.method = method;
+            this.callOptions = callOptions;
+            this.next = next;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        ClientCall<ReqT, ResT> delegateFor(ReqT payload) {
+            if (payload == null) {
+                // No request message, so nothing to coalesce on
+                return next.newCall(method, callOptions);
+            }
+            RequestKey key = RequestKey.of(method, payload);
+            Long deadlineNanoTime = callOptions.getDeadlineNanoTime();
+            while (true) {
+                Flight<ReqT, ResT> current = (Flight<ReqT, ResT>) flights.get(key);
+                if (current == null) {
+                    Flight<ReqT, ResT> started = new Flight<>(key, deadlineNanoTime);
+                    if (flights.putIfAbsent(key, started) == null) {
+                        return new WaiterCall(started, started.join(listener(), deadlineNanoTime), payload);
+                    }
+                } else if (!current.accepts(deadlineNanoTime)) {
+                    // Waiting would cut this call short by more than the tolerance
+                    return next.newCall(method, callOptions);
+                } else {
+                    Waiter<ResT> waiter = current.join(listener(), deadlineNanoTime);
+                    if (waiter != null) {
+                        coalesced.increment();
+                        return new WaiterCall(current, waiter, null);
+                    }
+                    flights.remove(key, current);
+                }
+            }
+        }
+
+        /**
+         * Delegate once this call has joined a flight. Starting it starts the shared call if this call leads the
+         * flight, and cancelling it leaves the flight. The shared call sends the request and requests the response
+         * itself.
+         */
+        private final class WaiterCall extends ClientCall<ReqT, ResT> {
+            private final Flight<ReqT, ResT> flight;
+            private final Waiter<ResT> waiter;
+            // Request message if leading the flight, otherwise null
+            private final ReqT payload;
+
+            WaiterCall(Flight<ReqT, ResT> flight, Waiter<ResT> waiter, ReqT payload) {
+                this.flight = flight;
+                this.waiter = waiter;
+                this.payload = payload;
+            }
+
+            @Override
+            public void start(Listener<ResT> listener, Metadata.Headers headers) {
+                if (payload != null) {
+                    flight.start(method, callOptions, next, headers, payload);
+                }
+            }
+
+            @Override
+            public void request(int numMessages) {
+            }
+
+            @Override
+            public void sendPayload(ReqT payload) {
+            }
+
+            @Override
+            public void halfClose() {
+            }
+
+            @Override
+            public void cancel() {
+                flight.leave(waiter, Status.CANCELLED);
+            }
+        }
+    }
+}
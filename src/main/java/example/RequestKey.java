@@ -0,0 +1,61 @@
+package example;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.MessageLite;
+import io.grpc.MethodDescriptor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Identity of a unary request: the full method name plus the serialized request message.
+ */
+final class RequestKey {
+    private final String method;
+    private final ByteString request;
+    private final int hash;
+
+    static <ReqT> RequestKey of(MethodDescriptor<ReqT, ?> method, ReqT request) {
+        return new RequestKey(method.getName(), serialize(method, request));
+    }
+
+    private static <ReqT> ByteString serialize(MethodDescriptor<ReqT, ?> method, ReqT request) {
+        if (request instanceof MessageLite) {
+            return ((MessageLite) request).toByteString();
+        }
+        try (InputStream in = method.streamRequest(request)) {
+            return ByteString.readFrom(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private RequestKey(String method, ByteString request) {
+        this.method = method;
+        this.request = request;
+        this.hash = 31 * method.hashCode() + request.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RequestKey)) {
+            return false;
+        }
+        RequestKey other = (RequestKey) o;
+        return hash == other.hash && method.equals(other.method) && request.equals(other.request);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return method + "[" + request.size() + " bytes]";
+    }
+}
@@ -0,0 +1,54 @@
+package example;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket limiting retries to a fraction of requests. Every original request deposits ratio tokens and every
+ * retry withdraws one, so retries never exceed ratio times the requests plus the initial burst, however many
+ * calls are failing.
+ */
+public final class RetryBudget {
+    private static final long scale = 1000;
+
+    private final long deposit;
+    private final long max;
+    private final AtomicLong tokens;
+
+    /**
+     * Creates a budget allowing retries for the given fraction of requests, with up to maxTokens retries
+     * available in a burst.
+     */
+    public static RetryBudget create(double ratio, int maxTokens) {
+        if (ratio < 0 || maxTokens < 0) {
+            throw new IllegalArgumentException("ratio and maxTokens must not be negative");
+        }
+        return new RetryBudget((long) (ratio * scale), maxTokens * scale);
+    }
+
+    private RetryBudget(long deposit, long max) {
+        this.deposit = deposit;
+        this.max = max;
+        tokens = new AtomicLong(max);
+    }
+
+    public void onRequest() {
+        if (deposit > 0) {
+            tokens.accumulateAndGet(deposit, (t, d) -> Math.min(max, t + d));
+        }
+    }
+
+    /**
+     * Withdraws a token for a retry, returning false if the budget is exhausted.
+     */
+    public boolean tryRetry() {
+        while (true) {
+            long t = tokens.get();
+            if (t < scale) {
+                return false;
+            }
+            if (tokens.compareAndSet(t, t - scale)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package example;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retry policy for unary calls keyed by both the gRPC status code and the application error code. Client errors
+ * (see ErrorException.isClientError()) are never retried. Other failures are retried if their status code is
+ * retryable and, when error information is present, its error code is too, with exponential backoff and full
+ * jitter. All retries draw on a RetryBudget so they can't exceed a fraction of traffic during an outage.
+ */
+public final class RetryPolicy {
+    static final ScheduledExecutorService defaultScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "retry-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final double multiplier;
+    private final Set<Status.Code> retryableStatusCodes;
+    private final Set<ErrorStatus.Code> retryableErrorCodes;
+    private final RetryBudget budget;
+    private final ScheduledExecutorService scheduler;
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    private RetryPolicy(Builder builder) {
+        maxAttempts = builder.maxAttempts;
+        initialBackoffNanos = builder.initialBackoffNanos;
+        maxBackoffNanos = builder.maxBackoffNanos;
+        multiplier = builder.multiplier;
+        retryableStatusCodes = copyOf(Status.Code.class, builder.retryableStatusCodes);
+        retryableErrorCodes = copyOf(ErrorStatus.Code.class, builder.retryableErrorCodes);
+        budget = builder.budget;
+        scheduler = builder.scheduler;
+    }
+
+    private static <E extends Enum<E>> Set<E> copyOf(Class<E> type, Set<E> values) {
+        Set<E> copy = EnumSet.noneOf(type);
+        copy.addAll(values);
+        return Collections.unmodifiableSet(copy);
+    }
+
+    public boolean isRetryable(Status status, ErrorStatus errorStatus) {
+        if (status.isOk() || ErrorException.isClientError(status.getCode())) {
+            return false;
+        }
+        if (!retryableStatusCodes.contains(status.getCode())) {
+            return false;
+        }
+        return errorStatus == null || retryableErrorCodes.contains(errorStatus.code());
+    }
+
+    /**
+     * Returns the backoff before the given retry (1 for the first), chosen uniformly between zero and the
+     * exponential backoff for that retry.
+     */
+    long backoffNanos(int retry) {
+        double backoff = Math.min(maxBackoffNanos, initialBackoffNanos * Math.pow(multiplier, retry - 1));
+        return (long) (ThreadLocalRandom.current().nextDouble() * backoff);
+    }
+
+    /**
+     * ClientInterceptor which retries unary calls according to this policy. Responses are buffered until an
+     * attempt succeeds or the call fails for good, so the application listener only sees the final attempt.
+     */
+    public ClientInterceptor interceptor() {
+        return new ClientInterceptor() {
+            @Override
+            public <ReqT, ResT> ClientCall<ReqT, ResT> interceptCall(MethodDescriptor<ReqT, ResT> method,
+                                                                     CallOptions callOptions, Channel next) {
+                return new RetryingCall<>(method, callOptions, next);
+            }
+        };
+    }
+
+    private final class RetryingCall<ReqT, ResT> extends ClientCall<ReqT, ResT> {
+        private final MethodDescriptor<ReqT, ResT> method;
+        private final CallOptions callOptions;
+        private final Channel next;
+        private Listener<ResT> listener;
+        private Metadata.Headers headers;
+        private ReqT payload;
+        // Guarded by this
+        private int requested;
+        private int attempts;
+        private ClientCall<ReqT, ResT> current;
+        private boolean active;
+        private boolean cancelled;
+        private boolean done;
+        private ScheduledFuture<?> retry;
+
+        RetryingCall(MethodDescriptor<ReqT, ResT> method, CallOptions callOptions, Channel next) {
+            this.method = method;
+            this.callOptions = callOptions;
+            this.next = next;
+        }
+
+        @Override
+        public void start(Listener<ResT> listener, Metadata.Headers headers) {
+            boolean cancelledEarly;
+            synchronized (this) {
+                this.listener = listener;
+                this.headers = headers;
+                cancelledEarly = cancelled;
+            }
+            if (cancelledEarly) {
+                listener.onClose(Status.CANCELLED, new Metadata.Trailers());
+                return;
+            }
+            budget.onRequest();
+        }
+
+        @Override
+        public void request(int numMessages) {
+            ClientCall<ReqT, ResT> call;
+            synchronized (this) {
+                requested += numMessages;
+                call = active ? current : null;
+            }
+            if (call != null) {
+                call.request(numMessages);
+            }
+        }
+
+        @Override
+        public void sendPayload(ReqT payload) {
+            this.payload = payload;
+        }
+
+        @Override
+        public void halfClose() {
+            attempt();
+        }
+
+        @Override
+        public void cancel() {
+            ClientCall<ReqT, ResT> call;
+            boolean closeListener;
+            synchronized (this) {
+                if (done || cancelled) {
+                    return;
+                }
+                cancelled = true;
+                if (active) {
+                    // The attempt closes with CANCELLED, which is final and delivers it
+                    call = current;
+                    closeListener = false;
+                } else {
+                    // Before the first attempt or waiting to retry
+                    call = null;
+                    closeListener = listener != null;
+                    done = closeListener;
+                    if (retry != null) {
+                        retry.cancel(false);
+                        retry = null;
+                    }
+                }
+            }
+            if (call != null) {
+                call.cancel();
+            } else if (closeListener) {
+                listener.onClose(Status.CANCELLED, new Metadata.Trailers());
+            }
+        }
+
+        private void attempt() {
+            ClientCall<ReqT, ResT> call;
+            int pending;
+            synchronized (this) {
+                retry = null;
+                if (done || cancelled) {
+                    // The listener was closed by cancel()
+                    return;
+                }
+                attempts++;
+                call = next.newCall(method, callOptions);
+                current = call;
+                active = true;
+                pending = requested;
+            }
+            Metadata.Headers attemptHeaders = new Metadata.Headers();
+            attemptHeaders.merge(headers);
+            call.start(new AttemptListener(), attemptHeaders);
+            call.request(pending);
+            call.sendPayload(payload);
+            call.halfClose();
+            boolean stale;
+            synchronized (this) {
+                stale = cancelled;
+            }
+            if (stale) {
+                // cancel() may have reached the attempt before it started
+                call.cancel();
+            }
+        }
+
+        private final class AttemptListener extends Listener<ResT> {
+            private Metadata.Headers responseHeaders;
+            private ResT value;
+
+            @Override
+            public void onHeaders(Metadata.Headers headers) {
+                responseHeaders = headers;
+            }
+
+            @Override
+            public void onPayload(ResT payload) {
+                value = payload;
+            }
+
+            @Override
+            public void onClose(Status status, Metadata.Trailers trailers) {
+                synchronized (RetryingCall.this) {
+                    active = false;
+                    if (!status.isOk() && !cancelled && attempts < maxAttempts
+                        && isRetryable(status, ErrorStatus.fromMetadata(trailers).orElse(null))
+                        && budget.tryRetry()) {
+                        retry = scheduler.schedule(RetryingCall.this::attempt, backoffNanos(attempts),
+                            TimeUnit.NANOSECONDS);
+                        return;
+                    }
+                    done = true;
+                }
+                if (responseHeaders != null) {
+                    listener.onHeaders(responseHeaders);
+                }
+                if (value != null) {
+                    listener.onPayload(value);
+                }
+                listener.onClose(status, trailers);
+            }
+        }
+    }
+
+    /**
+     * Builder for RetryPolicy. Defaults to 3 attempts, 10ms initial backoff doubling up to 1s, retrying
+     * UNAVAILABLE and INTERNAL failures without error information or with the unknown error code, and a budget of
+     * 10% of requests with a burst of 10 retries.
+     */
+    public static final class Builder {
+        private int maxAttempts = 3;
+        private long initialBackoffNanos = TimeUnit.MILLISECONDS.toNanos(10);
+        private long maxBackoffNanos = TimeUnit.SECONDS.toNanos(1);
+        private double multiplier = 2;
+        private Set<Status.Code> retryableStatusCodes = EnumSet.of(Status.Code.UNAVAILABLE, Status.Code.INTERNAL);
+        private Set<ErrorStatus.Code> retryableErrorCodes = EnumSet.of(ErrorStatus.Code.unknown);
+        private RetryBudget budget = RetryBudget.create(0.1, 10);
+        private ScheduledExecutorService scheduler = defaultScheduler;
+
+        private Builder() {}
+
+        /**
+         * Maximum number of attempts including the original call.
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("maxAttempts must be positive");
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        public Builder backoff(long initial, long max, TimeUnit unit, double multiplier) {
+            if (initial < 0 || max < initial || multiplier < 1) {
+                throw new IllegalArgumentException("invalid backoff");
+            }
+            this.initialBackoffNanos = unit.toNanos(initial);
+            this.maxBackoffNanos = unit.toNanos(max);
+            this.multiplier = multiplier;
+            return this;
+        }
+
+        /**
+         * Status codes which may be retried. Client error status codes are never retried even if included.
+         */
+        public Builder retryableStatusCodes(Set<Status.Code> codes) {
+            this.retryableStatusCodes = Objects.requireNonNull(codes, "codes");
+            return this;
+        }
+
+        /**
+         * Error codes which may be retried when failures include error information.
+         */
+        public Builder retryableErrorCodes(Set<ErrorStatus.Code> codes) {
+            this.retryableErrorCodes = Objects.requireNonNull(codes, "codes");
+            return this;
+        }
+
+        public Builder budget(RetryBudget budget) {
+            this.budget = Objects.requireNonNull(budget, "budget");
+            return this;
+        }
+
+        public Builder scheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = Objects.requireNonNull(scheduler, "scheduler");
+            return this;
+        }
+
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
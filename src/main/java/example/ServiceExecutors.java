@@ -0,0 +1,146 @@
+package example;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Executor strategies for dispatching service calls, and an interceptor which runs a service's call listeners on a
+ * given executor so the strategy can be chosen per service. Callers own the executors and must shut them down.
+ */
+public final class ServiceExecutors {
+    private ServiceExecutors() {}
+
+    /**
+     * Runs calls on the thread delivering them, i.e. the transport event loop. Only suitable for non-blocking
+     * handlers.
+     */
+    public static ExecutorService direct() {
+        return MoreExecutors.newDirectExecutorService();
+    }
+
+    /**
+     * Fixed pool of threads with a bounded queue. When the queue is full calls run on the delivering thread, which
+     * pushes back on the transport.
+     */
+    public static ExecutorService fixed(int threads, int queueSize) {
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueSize), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    public static ExecutorService forkJoin(int parallelism) {
+        return new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+    }
+
+    /**
+     * New virtual thread per call. Requires Java 21 or later at runtime.
+     */
+    public static ExecutorService virtualThreadPerCall() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or later", e);
+        }
+    }
+
+    /**
+     * Returns the service with call listeners invoked on the given executor, in order for each call.
+     */
+    public static ServerServiceDefinition intercept(ServerServiceDefinition service, Executor executor) {
+        return ServerInterceptors.intercept(service, interceptor(executor));
+    }
+
+    public static ServerInterceptor interceptor(Executor executor) {
+        Objects.requireNonNull(executor, "executor");
+        return new ServerInterceptor() {
+            @Override
+            public <ReqT, ResT> ServerCall.Listener<ReqT> interceptCall(
+                String method, ServerCall<ResT> call, Metadata.Headers headers, ServerCallHandler<ReqT, ResT> next) {
+                ServerCall.Listener<ReqT> listener = next.startCall(method, call, headers);
+                SerializingExecutor serializing = new SerializingExecutor(executor);
+                return new ServerCall.Listener<ReqT>() {
+                    @Override
+                    public void onPayload(ReqT payload) {
+                        serializing.execute(() -> listener.onPayload(payload));
+                    }
+
+                    @Override
+                    public void onHalfClose() {
+                        serializing.execute(listener::onHalfClose);
+                    }
+
+                    @Override
+                    public void onCancel() {
+                        serializing.execute(listener::onCancel);
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        serializing.execute(listener::onComplete);
+                    }
+
+                    @Override
+                    public void onReady() {
+                        serializing.execute(listener::onReady);
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Runs tasks on the delegate executor one at a time, in submission order.
+     */
+    private static final class SerializingExecutor implements Executor, Runnable {
+        private final Executor delegate;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean running = new AtomicBoolean();
+
+        SerializingExecutor(Executor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+            schedule();
+        }
+
+        private void schedule() {
+            if (running.compareAndSet(false, true)) {
+                delegate.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+            } finally {
+                running.set(false);
+                if (!tasks.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package example;
+
+import com.google.common.base.Ticker;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free count of events, and how many of them were hits, over a sliding window of time buckets. Buckets are
+ * recycled as time moves on, so memory is fixed and recording is a few atomic operations.
+ */
+final class SlidingWindow {
+    private final int buckets;
+    private final long bucketNanos;
+    private final Ticker ticker;
+    private final AtomicLongArray epochs;
+    private final AtomicLongArray counts;
+    private final AtomicLongArray hits;
+
+    SlidingWindow(int buckets, long windowNanos, Ticker ticker) {
+        this.buckets = buckets;
+        this.bucketNanos = Math.max(1, windowNanos / buckets);
+        this.ticker = ticker;
+        epochs = new AtomicLongArray(buckets);
+        counts = new AtomicLongArray(buckets);
+        hits = new AtomicLongArray(buckets);
+        reset();
+    }
+
+    void record(boolean hit) {
+        long epoch = ticker.read() / bucketNanos;
+        int index = (int) (epoch % buckets);
+        long bucketEpoch = epochs.get(index);
+        if (bucketEpoch != epoch && epochs.compareAndSet(index, bucketEpoch, epoch)) {
+            // Racing recorders may land in the old bucket just before it's cleared, losing a sample or two
+            counts.set(index, 0);
+            hits.set(index, 0);
+        }
+        counts.incrementAndGet(index);
+        if (hit) {
+            hits.incrementAndGet(index);
+        }
+    }
+
+    long count() {
+        return sum(counts);
+    }
+
+    long hits() {
+        return sum(hits);
+    }
+
+    private long sum(AtomicLongArray values) {
+        long oldest = ticker.read() / bucketNanos - buckets + 1;
+        long total = 0;
+        for (int i = 0; i < buckets; i++) {
+            if (epochs.get(i) >= oldest) {
+                total += values.get(i);
+            }
+        }
+        return total;
+    }
+
+    void reset() {
+        for (int i = 0; i < buckets; i++) {
+            epochs.set(i, Long.MIN_VALUE);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package example;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Size-bounded cache with W-TinyLFU eviction. New entries go to a small LRU admission window. When the window
+ * overflows, its oldest entry only displaces the main region's LRU victim if a frequency sketch of recent accesses
+ * says it's used more often, so one-off lookups can't flush frequently used entries.
+ * <p>
+ * Reads are lock-free lookups in a concurrent map. Recording a read in the policy is skipped when the policy lock is
+ * contended, trading a little accuracy for never blocking readers. Writes take the lock.
+ */
+final class TinyLfuCache<K, V> {
+    private final int windowSize;
+    private final int mainSize;
+    private final Map<K, V> data = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    // Guarded by lock
+    private final LinkedHashMap<K, Boolean> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Boolean> main = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+    private final LongAdder evictions = new LongAdder();
+
+    TinyLfuCache(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        windowSize = Math.max(1, maximumSize / 100);
+        mainSize = maximumSize - windowSize;
+        sketch = new FrequencySketch(maximumSize);
+    }
+
+    V get(K key) {
+        V value = data.get(key);
+        if (value != null && lock.tryLock()) {
+            try {
+                sketch.increment(key);
+                if (window.get(key) == null) {
+                    main.get(key);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return value;
+    }
+
+    void put(K key, V value) {
+        lock.lock();
+        try {
+            sketch.increment(key);
+            if (data.put(key, value) != null) {
+                if (window.get(key) == null) {
+                    main.get(key);
+                }
+                return;
+            }
+            window.put(key, Boolean.TRUE);
+            if (window.size() > windowSize) {
+                evictFromWindow();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the entry if it's still mapped to the value.
+     */
+    void remove(K key, V value) {
+        lock.lock();
+        try {
+            if (data.remove(key, value)) {
+                window.remove(key);
+                main.remove(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        return data.size();
+    }
+
+    long evictions() {
+        return evictions.sum();
+    }
+
+    private void evictFromWindow() {
+        K candidate = eldest(window);
+        window.remove(candidate);
+        if (main.size() < mainSize) {
+            main.put(candidate, Boolean.TRUE);
+            return;
+        }
+        K victim = main.isEmpty() ? null : eldest(main);
+        if (victim != null && sketch.frequency(candidate) > sketch.frequency(victim)) {
+            main.remove(victim);
+            data.remove(victim);
+            main.put(candidate, Boolean.TRUE);
+        } else {
+            data.remove(candidate);
+        }
+        evictions.increment();
+    }
+
+    private static <K> K eldest(LinkedHashMap<K, Boolean> map) {
+        return map.keySet().iterator().next();
+    }
+
+    /**
+     * Count-min sketch of 4-bit saturating counters in 4 rows, each 4 times the cache size so collisions rarely
+     * inflate estimates. All counters are halved once the number of increments reaches 10 times the cache size, so
+     * old popularity fades.
+     */
+    static final class FrequencySketch {
+        private static final int rows = 4;
+        private static final int[] seeds = {0x97cb3127, 0x5d588b65, 0x6b0f2b8d, 0x2127599b};
+
+        private final byte[] counters;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int maximumSize) {
+            int width = Integer.highestOneBit(Math.max(16, maximumSize) - 1) << 3;
+            counters = new byte[rows * width];
+            mask = width - 1;
+            sampleSize = 10 * maximumSize;
+        }
+
+        void increment(Object key) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int row = 0; row < rows; row++) {
+                int index = index(hash, row);
+                if (counters[index] < 15) {
+                    counters[index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(Object key) {
+            int hash = spread(key.hashCode());
+            int frequency = 15;
+            for (int row = 0; row < rows; row++) {
+                frequency = Math.min(frequency, counters[index(hash, row)]);
+            }
+            return frequency;
+        }
+
+        private int index(int hash, int row) {
+            int h = hash * seeds[row];
+            h ^= h >>> 16;
+            return row * (mask + 1) + (h & mask);
+        }
+
+        private void reset() {
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] >>= 1;
+            }
+            additions /= 2;
+        }
+
+        private static int spread(int hash) {
+            hash ^= hash >>> 16;
+            hash *= 0x85ebca6b;
+            return hash ^ (hash >>> 13);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package example;
+
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.grpc.ClientCall;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Unary call helpers equivalent to ClientCalls which fail with ErrorException including additional error
+ * information from error response metadata. Error information is read directly in the call listener, which also
+ * completes the returned future or observer, so no capturing call, status holder or wrapper is allocated per call.
+ */
+public final class UnaryCalls {
+    private UnaryCalls() {}
+
+    /**
+     * Blocks until the call completes. The wait parks on the future's lock rather than a monitor, so it doesn't pin
+     * virtual threads to their carrier.
+     */
+    public static <ReqT, ResT> ResT blockingUnaryCall(ClientCall<ReqT, ResT> call, ReqT param) {
+        UnaryFuture<ResT> future = futureUnaryCall(call, param);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw ErrorException.forStatus(Status.CANCELLED.withCause(e));
+        } catch (ExecutionException e) {
+            throw ErrorException.fromThrowable(e.getCause());
+        }
+    }
+
+    public static <ReqT, ResT> UnaryFuture<ResT> futureUnaryCall(ClientCall<ReqT, ResT> call, ReqT param) {
+        UnaryFuture<ResT> future = new UnaryFuture<>(call);
+        start(call, future.listener, param);
+        return future;
+    }
+
+    /**
+     * Returns a CompletableFuture completed directly from the call listener, failing with ErrorException.
+     * Cancelling the returned future cancels the call.
+     */
+    public static <ReqT, ResT> CompletableFuture<ResT> completableUnaryCall(ClientCall<ReqT, ResT> call, ReqT param) {
+        UnaryCompletableFuture<ResT> future = new UnaryCompletableFuture<>(call);
+        start(call, future.listener, param);
+        return future;
+    }
+
+    public static <ReqT, ResT> void asyncUnaryCall(ClientCall<ReqT, ResT> call, ReqT param,
+                                                   StreamObserver<ResT> observer) {
+        start(call, new ObserverListener<>(observer), param);
+    }
+
+    private static <ReqT, ResT> void start(ClientCall<ReqT, ResT> call, ClientCall.Listener<ResT> listener,
+                                           ReqT param) {
+        call.start(listener, new Metadata.Headers());
+        try {
+            call.request(1);
+            call.sendPayload(param);
+            call.halfClose();
+        } catch (RuntimeException e) {
+            call.cancel();
+            throw e;
+        }
+    }
+
+    static ErrorException toException(Status status, Metadata.Trailers trailers) {
+        return ErrorException.forStatus(status, ErrorStatus.fromMetadata(trailers).orElse(null));
+    }
+
+    private static ErrorException noValue() {
+        return ErrorException.forStatus(Status.INTERNAL.withDescription("No value received"));
+    }
+
+    /**
+     * Listener which keeps the single response value and reports the call's result when it closes.
+     */
+    private abstract static class ValueListener<ResT> extends ClientCall.Listener<ResT> {
+        private ResT value;
+
+        abstract void onResult(ResT value, ErrorException error);
+
+        @Override
+        public void onHeaders(Metadata.Headers headers) {
+        }
+
+        @Override
+        public void onPayload(ResT payload) {
+            value = payload;
+        }
+
+        @Override
+        public void onClose(Status status, Metadata.Trailers trailers) {
+            if (!status.isOk()) {
+                onResult(null, toException(status, trailers));
+            } else if (value == null) {
+                onResult(null, noValue());
+            } else {
+                onResult(value, null);
+            }
+        }
+    }
+
+    /**
+     * Future completed directly from its call listener, failing with ErrorException. Cancelling the future cancels
+     * the call.
+     */
+    public static final class UnaryFuture<ResT> extends AbstractFuture<ResT> {
+        private final ClientCall<?, ResT> call;
+        private final ClientCall.Listener<ResT> listener = new ValueListener<ResT>() {
+            @Override
+            void onResult(ResT value, ErrorException error) {
+                if (error != null) {
+                    setException(error);
+                } else {
+                    set(value);
+                }
+            }
+        };
+
+        private UnaryFuture(ClientCall<?, ResT> call) {
+            this.call = call;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (super.cancel(mayInterruptIfRunning)) {
+                call.cancel();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static final class UnaryCompletableFuture<ResT> extends CompletableFuture<ResT> {
+        private final ClientCall<?, ResT> call;
+        private final ClientCall.Listener<ResT> listener = new ValueListener<ResT>() {
+            @Override
+            void onResult(ResT value, ErrorException error) {
+                if (error != null) {
+                    completeExceptionally(error);
+                } else {
+                    complete(value);
+                }
+            }
+        };
+
+        private UnaryCompletableFuture(ClientCall<?, ResT> call) {
+            this.call = call;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                call.cancel();
+            }
+            return cancelled;
+        }
+    }
+
+    private static final class ObserverListener<ResT> extends ClientCall.Listener<ResT> {
+        private final StreamObserver<ResT> observer;
+        private boolean received;
+
+        ObserverListener(StreamObserver<ResT> observer) {
+            this.observer = observer;
+        }
+
+        @Override
+        public void onHeaders(Metadata.Headers headers) {
+        }
+
+        @Override
+        public void onPayload(ResT payload) {
+            received = true;
+            observer.onValue(payload);
+        }
+
+        @Override
+        public void onClose(Status status, Metadata.Trailers trailers) {
+            if (!status.isOk()) {
+                observer.onError(toException(status, trailers));
+            } else if (!received) {
+                observer.onError(noValue());
+            } else {
+                observer.onCompleted();
+            }
+        }
+    }
+}
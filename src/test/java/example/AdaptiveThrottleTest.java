@@ -0,0 +1,100 @@
+package example;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests AdaptiveThrottle against a server which sheds every call while overloaded.
+ */
+public class AdaptiveThrottleTest {
+    private static final int calls = 1000;
+    private static final ErrorStatus accountNotFound =
+        ErrorStatus.forCode(ErrorStatus.Code.accountNotFound).withMessage("Account not found");
+
+    private final AtomicInteger received = new AtomicInteger();
+    private final AtomicBoolean overloaded = new AtomicBoolean();
+    private AdaptiveThrottle throttle;
+    private ExampleServer server;
+    private ExampleClient client;
+
+    @Before
+    public void init() {
+        server = ExampleServer.newBuilder(0).interceptors(new Shedder()).build();
+        server.startAsync().awaitRunning();
+        throttle = AdaptiveThrottle.newBuilder().build();
+        client = ExampleClient.newBuilder(new InetSocketAddress("localhost", server.port()))
+            .adaptiveThrottle(throttle)
+            .build();
+    }
+
+    @After
+    public void destroy() {
+        client.close();
+        server.stopAsync().awaitTerminated();
+    }
+
+    @Test
+    public void clientErrorsAreAccepts() {
+        for (int i = 0; i < 100; i++) {
+            call();
+        }
+        assertEquals(0, throttle.rejectionProbability(), 0);
+        assertEquals(0, throttle.rejected());
+    }
+
+    @Test
+    public void shedsAtClientWhileOverloaded() {
+        overloaded.set(true);
+        for (int i = 0; i < calls; i++) {
+            call();
+        }
+        assertTrue(throttle.rejectionProbability() > 0.9);
+        assertEquals(calls, received.get() + throttle.rejected());
+        assertTrue("received " + received.get(), received.get() < calls / 2);
+    }
+
+    private void call() {
+        try {
+            client.generateErrorBlockingUnaryCall(accountNotFound);
+            fail();
+        } catch (ErrorException e) {
+            Status.Code expected = overloaded.get() ? Status.Code.UNAVAILABLE : Status.Code.NOT_FOUND;
+            if (e.getStatus().getCode() != Status.Code.RESOURCE_EXHAUSTED) {
+                assertEquals(expected, e.getStatus().getCode());
+            }
+        }
+    }
+
+    /**
+     * Fails calls with RESOURCE_EXHAUSTED while overloaded.
+     */
+    private class Shedder implements ServerInterceptor {
+        @Override
+        public <ReqT, ResT> ServerCall.Listener<ReqT> interceptCall(
+            String method, ServerCall<ResT> call, Metadata.Headers headers, ServerCallHandler<ReqT, ResT> next) {
+            received.incrementAndGet();
+            if (!overloaded.get()) {
+                return next.startCall(method, call, headers);
+            }
+            return next.startCall(method, new ForwardingServerCall.SimpleForwardingServerCall<ResT>(call) {
+                @Override
+                public void close(Status status, Metadata.Trailers trailers) {
+                    super.close(Status.RESOURCE_EXHAUSTED.withDescription("Overloaded"), new Metadata.Trailers());
+                }
+            }, headers);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package example;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests outlier ejection across several loopback servers, some of which are slow and failing.
+ */
+public class BackendPoolTest {
+    private static final int backends = 3;
+    private static final ErrorStatus accountNotFound =
+        ErrorStatus.forCode(ErrorStatus.Code.accountNotFound).withMessage("Account not found");
+
+    private final List<ExampleServer> servers = new ArrayList<>();
+    private final List<AtomicInteger> received = new ArrayList<>();
+    private ExampleClient client;
+
+    @After
+    public void destroy() {
+        if (client != null) {
+            client.close();
+        }
+        servers.forEach(s -> s.stopAsync().awaitTerminated());
+    }
+
+    @Test
+    public void ejectsSlowFailingBackend() {
+        BackendPool pool = start(1, true, 0.5, 0, BackendPool.Balancer.roundRobin);
+        for (int i = 0; i < 60; i++) {
+            call();
+        }
+        assertTrue(pool.isEjected(0));
+        assertFalse(pool.isEjected(1));
+        assertFalse(pool.isEjected(2));
+        assertEquals(1, pool.ejections());
+
+        int bad = received.get(0).get();
+        for (int i = 0; i < 30; i++) {
+            assertEquals(Status.Code.NOT_FOUND, call());
+        }
+        assertEquals(bad, received.get(0).get());
+    }
+
+    @Test
+    public void ejectionCapped() {
+        BackendPool pool = start(2, true, 0.4, 0, BackendPool.Balancer.roundRobin);
+        for (int i = 0; i < 90; i++) {
+            call();
+        }
+        assertEquals(1, pool.ejections());
+        assertTrue(pool.isEjected(0) != pool.isEjected(1));
+        assertFalse(pool.isEjected(2));
+    }
+
+    @Test
+    public void ejectsSlowBackend() {
+        BackendPool pool = start(1, false, 0.5, 5, BackendPool.Balancer.roundRobin);
+        for (int i = 0; i < 30; i++) {
+            assertEquals(Status.Code.NOT_FOUND, call());
+        }
+        assertTrue(pool.isEjected(0));
+        assertEquals(1, pool.ejections());
+    }
+
+    @Test
+    public void powerOfTwoChoicesAvoidsSlowBackend() {
+        start(1, false, 0.5, 0, BackendPool.Balancer.powerOfTwoChoices);
+        for (int i = 0; i < 60; i++) {
+            assertEquals(Status.Code.NOT_FOUND, call());
+        }
+        // Round robin would send it 20
+        assertTrue("slow backend received " + received.get(0).get(), received.get(0).get() < 10);
+    }
+
+    @Test
+    public void consistentHashKeepsKeyOnOneBackend() {
+        start(0, false, 0.5, 0, BackendPool.Balancer.consistentHash);
+        for (int i = 0; i < 30; i++) {
+            assertEquals(Status.Code.NOT_FOUND, call());
+        }
+        long hit = received.stream().filter(r -> r.get() > 0).count();
+        assertEquals(1, hit);
+    }
+
+    /**
+     * Starts the backends, the first bad of which are slow and optionally failing, and a client with outlier
+     * detection.
+     */
+    private BackendPool start(int bad, boolean failing, double maxEjectedFraction, double latencyFactor,
+                              BackendPool.Balancer balancer) {
+        List<SocketAddress> addresses = new ArrayList<>();
+        for (int i = 0; i < backends; i++) {
+            AtomicInteger counter = new AtomicInteger();
+            received.add(counter);
+            ExampleServer server = ExampleServer.newBuilder(0)
+                .interceptors(new Backend(counter, i < bad, failing))
+                .build();
+            server.startAsync().awaitRunning();
+            servers.add(server);
+            addresses.add(new InetSocketAddress("localhost", server.port()));
+        }
+        ExampleClient.Builder builder = ExampleClient.newBuilder(addresses)
+            .balancer(balancer)
+            .outlierDetection(OutlierDetection.newBuilder()
+                .errorRate(0.5, 5)
+                .baseEjectionTime(1, TimeUnit.MINUTES)
+                .maxEjectedFraction(maxEjectedFraction)
+                .latencyFactor(latencyFactor)
+                .build());
+        if (balancer == BackendPool.Balancer.consistentHash) {
+            builder.consistentHash(request -> ((Example.GenerateErrorRequest) request).getMessage());
+        }
+        client = builder.build();
+        return client.backendPool().get();
+    }
+
+    private Status.Code call() {
+        try {
+            client.generateErrorBlockingUnaryCall(accountNotFound);
+            fail();
+            return null;
+        } catch (ErrorException e) {
+            return e.getStatus().getCode();
+        }
+    }
+
+    /**
+     * Counts calls and, if bad, delays them and optionally fails them with UNAVAILABLE.
+     */
+    private static class Backend implements ServerInterceptor {
+        private final AtomicInteger received;
+        private final boolean bad;
+        private final boolean failing;
+
+        Backend(AtomicInteger received, boolean bad, boolean failing) {
+            this.received = received;
+            this.bad = bad;
+            this.failing = failing;
+        }
+
+        @Override
+        public <ReqT, ResT> ServerCall.Listener<ReqT> interceptCall(
+            String method, ServerCall<ResT> call, Metadata.Headers headers, ServerCallHandler<ReqT, ResT> next) {
+            received.incrementAndGet();
+            if (!bad) {
+                return next.startCall(method, call, headers);
+            }
+            return next.startCall(method, new ForwardingServerCall.SimpleForwardingServerCall<ResT>(call) {
+                @Override
+                public void close(Status status, Metadata.Trailers trailers) {
+                    Status closeStatus = failing ? Status.UNAVAILABLE.withDescription("Injected fault") : status;
+                    Metadata.Trailers closeTrailers = failing ? new Metadata.Trailers() : trailers;
+                    RetryPolicy.defaultScheduler.schedule(() -> super.close(closeStatus, closeTrailers),
+                        failing ? 20 : 200, TimeUnit.MILLISECONDS);
+                }
+            }, headers);
+        }
+    }
+}
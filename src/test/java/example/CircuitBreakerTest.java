@@ -0,0 +1,245 @@
+package example;
+
+import com.google.common.base.Ticker;
+import com.google.protobuf.Empty;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests CircuitBreaker state transitions against a server with injected failures, using a manual ticker.
+ */
+public class CircuitBreakerTest {
+    private static final ErrorStatus accountNotFound =
+        ErrorStatus.forCode(ErrorStatus.Code.accountNotFound).withMessage("Account not found");
+
+    private final AtomicInteger attempts = new AtomicInteger();
+    private final AtomicBoolean failing = new AtomicBoolean();
+    private final AtomicLong now = new AtomicLong();
+    private final List<String> transitions = new ArrayList<>();
+    private CircuitBreaker breaker;
+    private ExampleServer server;
+    private ExampleClient client;
+
+    @Before
+    public void init() {
+        server = ExampleServer.newBuilder(0).interceptors(new FaultInjector()).build();
+        server.startAsync().awaitRunning();
+        breaker = CircuitBreaker.newBuilder()
+            .failureRate(0.5, 5)
+            .openDuration(5, TimeUnit.SECONDS)
+            .halfOpenCalls(1)
+            .ticker(new Ticker() {
+                @Override
+                public long read() {
+                    return now.get();
+                }
+            })
+            .transitionListener((method, from, to) -> {
+                synchronized (transitions) {
+                    transitions.add(from + "->" + to);
+                }
+            })
+            .build();
+        client = ExampleClient.newBuilder(new InetSocketAddress("localhost", server.port()))
+            .circuitBreaker(breaker)
+            .build();
+    }
+
+    @After
+    public void destroy() {
+        client.close();
+        server.stopAsync().awaitTerminated();
+    }
+
+    @Test
+    public void clientErrorsKeepCircuitClosed() {
+        for (int i = 0; i < 20; i++) {
+            assertCode(Status.Code.NOT_FOUND);
+        }
+        assertEquals(CircuitBreaker.State.closed, breaker.state(ExampleServiceGrpc.METHOD_GENERATE_ERROR));
+        assertEquals(0, breaker.transitions(CircuitBreaker.State.open));
+    }
+
+    @Test
+    public void clientErrorsDontDiluteFailureRate() {
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 3; j++) {
+                assertCode(Status.Code.NOT_FOUND);
+            }
+            failing.set(true);
+            assertCode(Status.Code.UNAVAILABLE);
+            failing.set(false);
+        }
+        assertEquals(CircuitBreaker.State.open, breaker.state(ExampleServiceGrpc.METHOD_GENERATE_ERROR));
+        assertEquals(20, attempts.get());
+    }
+
+    @Test
+    public void opensFailsFastAndRecovers() {
+        failing.set(true);
+        for (int i = 0; i < 5; i++) {
+            assertCode(Status.Code.UNAVAILABLE);
+        }
+        assertEquals(CircuitBreaker.State.open, breaker.state(ExampleServiceGrpc.METHOD_GENERATE_ERROR));
+
+        ErrorException e = assertCode(Status.Code.UNAVAILABLE);
+        assertTrue(e.getStatus().getDescription().startsWith("Circuit open"));
+        assertEquals(5, attempts.get());
+        assertEquals(1, breaker.rejected());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        failing.set(false);
+        assertCode(Status.Code.NOT_FOUND);
+        assertEquals(CircuitBreaker.State.closed, breaker.state(ExampleServiceGrpc.METHOD_GENERATE_ERROR));
+        assertEquals(6, attempts.get());
+        assertEquals(1, breaker.transitions(CircuitBreaker.State.halfOpen));
+        synchronized (transitions) {
+            assertEquals("[closed->open, open->halfOpen, halfOpen->closed]", transitions.toString());
+        }
+    }
+
+    @Test
+    public void failedProbeReopens() {
+        failing.set(true);
+        for (int i = 0; i < 5; i++) {
+            assertCode(Status.Code.UNAVAILABLE);
+        }
+        now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        assertCode(Status.Code.UNAVAILABLE);
+        assertEquals(CircuitBreaker.State.open, breaker.state(ExampleServiceGrpc.METHOD_GENERATE_ERROR));
+        assertEquals(2, breaker.transitions(CircuitBreaker.State.open));
+    }
+
+    @Test
+    public void unstartedCallsTakeNoProbes() {
+        openCircuit();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        ClientInterceptor interceptor = breaker.interceptor();
+        for (int i = 0; i < 3; i++) {
+            interceptor.interceptCall(
+                ExampleServiceGrpc.METHOD_GENERATE_ERROR, CallOptions.DEFAULT, new PendingChannel());
+        }
+        assertCode(Status.Code.NOT_FOUND);
+        assertEquals(CircuitBreaker.State.closed, breaker.state(ExampleServiceGrpc.METHOD_GENERATE_ERROR));
+    }
+
+    @Test
+    public void overdueProbesWrittenOff() {
+        openCircuit();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        ClientCall<Example.GenerateErrorRequest, Empty> probe = breaker.interceptor()
+            .interceptCall(ExampleServiceGrpc.METHOD_GENERATE_ERROR, CallOptions.DEFAULT, new PendingChannel());
+        probe.start(new ClientCall.Listener<Empty>() {
+            @Override
+            public void onHeaders(Metadata.Headers headers) {
+            }
+
+            @Override
+            public void onPayload(Empty payload) {
+            }
+
+            @Override
+            public void onClose(Status status, Metadata.Trailers trailers) {
+            }
+        }, new Metadata.Headers());
+        assertEquals(CircuitBreaker.State.halfOpen, breaker.state(ExampleServiceGrpc.METHOD_GENERATE_ERROR));
+        assertTrue(assertCode(Status.Code.UNAVAILABLE).getStatus().getDescription().startsWith("Circuit open"));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertCode(Status.Code.NOT_FOUND);
+        assertEquals(CircuitBreaker.State.closed, breaker.state(ExampleServiceGrpc.METHOD_GENERATE_ERROR));
+    }
+
+    private void openCircuit() {
+        failing.set(true);
+        for (int i = 0; i < 5; i++) {
+            assertCode(Status.Code.UNAVAILABLE);
+        }
+        failing.set(false);
+        assertEquals(CircuitBreaker.State.open, breaker.state(ExampleServiceGrpc.METHOD_GENERATE_ERROR));
+    }
+
+    private ErrorException assertCode(Status.Code code) {
+        try {
+            client.generateErrorBlockingUnaryCall(accountNotFound);
+            fail();
+            return null;
+        } catch (ErrorException e) {
+            assertEquals(code, e.getStatus().getCode());
+            return e;
+        }
+    }
+
+    /**
+     * Channel whose calls never complete.
+     */
+    private static class PendingChannel extends Channel {
+        @Override
+        public <ReqT, ResT> ClientCall<ReqT, ResT> newCall(MethodDescriptor<ReqT, ResT> method,
+                                                           CallOptions callOptions) {
+            return new ClientCall<ReqT, ResT>() {
+                @Override
+                public void start(Listener<ResT> listener, Metadata.Headers headers) {
+                }
+
+                @Override
+                public void request(int numMessages) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+
+                @Override
+                public void halfClose() {
+                }
+
+                @Override
+                public void sendPayload(ReqT payload) {
+                }
+            };
+        }
+    }
+
+    /**
+     * Fails calls with UNAVAILABLE while failing is set.
+     */
+    private class FaultInjector implements ServerInterceptor {
+        @Override
+        public <ReqT, ResT> ServerCall.Listener<ReqT> interceptCall(
+            String method, ServerCall<ResT> call, Metadata.Headers headers, ServerCallHandler<ReqT, ResT> next) {
+            attempts.incrementAndGet();
+            if (!failing.get()) {
+                return next.startCall(method, call, headers);
+            }
+            return next.startCall(method, new ForwardingServerCall.SimpleForwardingServerCall<ResT>(call) {
+                @Override
+                public void close(Status status, Metadata.Trailers trailers) {
+                    super.close(Status.UNAVAILABLE.withDescription("Injected fault"), new Metadata.Trailers());
+                }
+            }, headers);
+        }
+    }
+}
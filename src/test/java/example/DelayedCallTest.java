@@ -0,0 +1,137 @@
+package example;
+
+import io.grpc.ClientCall;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that DelayedCall closes its listener exactly once however cancel() interleaves with routing.
+ */
+public class DelayedCallTest {
+    private final List<Status> closes = new ArrayList<>();
+    private final ClientCall.Listener<String> listener = new ClientCall.Listener<String>() {
+        @Override
+        public void onHeaders(Metadata.Headers headers) {
+        }
+
+        @Override
+        public void onPayload(String payload) {
+        }
+
+        @Override
+        public void onClose(Status status, Metadata.Trailers trailers) {
+            closes.add(status);
+        }
+    };
+
+    @Test
+    public void routesOnPayload() {
+        TestCall call = new TestCall();
+        call.start(listener, new Metadata.Headers());
+        call.request(1);
+        call.sendPayload("key");
+        call.halfClose();
+        assertEquals("key", call.routedOn);
+        assertEquals("[start, request 1, payload key, halfClose]", call.delegate.events.toString());
+    }
+
+    @Test
+    public void cancelBeforeStart() {
+        TestCall call = new TestCall();
+        call.cancel();
+        call.start(listener, new Metadata.Headers());
+        call.sendPayload("key");
+        assertNull(call.delegate);
+        assertEquals(1, closes.size());
+        assertEquals(Status.Code.CANCELLED, closes.get(0).getCode());
+    }
+
+    @Test
+    public void cancelBeforeRouting() {
+        TestCall call = new TestCall();
+        call.start(listener, new Metadata.Headers());
+        call.cancel();
+        call.cancel();
+        call.sendPayload("key");
+        assertNull(call.delegate);
+        assertEquals(1, closes.size());
+    }
+
+    @Test
+    public void cancelWhileRouting() {
+        TestCall call = new TestCall();
+        call.cancelWhileRouting = true;
+        call.start(listener, new Metadata.Headers());
+        call.sendPayload("key");
+        assertEquals("[start, payload key, cancel]", call.delegate.events.toString());
+        // Closed once, by the delegate
+        assertEquals(1, closes.size());
+    }
+
+    @Test
+    public void cancelAfterRouting() {
+        TestCall call = new TestCall();
+        call.start(listener, new Metadata.Headers());
+        call.sendPayload("key");
+        call.cancel();
+        assertEquals("[start, payload key, cancel]", call.delegate.events.toString());
+        assertEquals(1, closes.size());
+    }
+
+    private static final class TestCall extends DelayedCall<String, String> {
+        RecordingCall delegate;
+        String routedOn;
+        boolean cancelWhileRouting;
+
+        @Override
+        ClientCall<String, String> delegateFor(String payload) {
+            routedOn = payload;
+            delegate = new RecordingCall();
+            if (cancelWhileRouting) {
+                cancel();
+            }
+            return delegate;
+        }
+    }
+
+    /**
+     * Records the methods called on it and closes its listener with CANCELLED when cancelled.
+     */
+    private static final class RecordingCall extends ClientCall<String, String> {
+        final List<String> events = new ArrayList<>();
+        private Listener<String> listener;
+
+        @Override
+        public void start(Listener<String> listener, Metadata.Headers headers) {
+            this.listener = listener;
+            events.add("start");
+        }
+
+        @Override
+        public void request(int numMessages) {
+            events.add("request " + numMessages);
+        }
+
+        @Override
+        public void cancel() {
+            events.add("cancel");
+            listener.onClose(Status.CANCELLED, new Metadata.Trailers());
+        }
+
+        @Override
+        public void halfClose() {
+            events.add("halfClose");
+        }
+
+        @Override
+        public void sendPayload(String payload) {
+            events.add("payload " + payload);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package example;
+
+import io.grpc.Status;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests ErrorException construction in default and stackless modes.
+ */
+public class ErrorExceptionTest {
+    private static final ErrorStatus accountNotFound = ErrorStatus.forCode(ErrorStatus.Code.accountNotFound);
+    private static final ErrorStatus loginRequired = ErrorStatus.forCode(ErrorStatus.Code.loginRequired);
+
+    @After
+    public void reset() {
+        ErrorException.setStacklessClientErrors(false);
+    }
+
+    @Test
+    public void defaultModeCapturesStackTrace() {
+        ErrorException e = ErrorException.forErrorStatus(accountNotFound);
+        assertTrue(e.getStackTrace().length > 0);
+        assertNotSame(e, ErrorException.forErrorStatus(accountNotFound));
+    }
+
+    @Test
+    public void stacklessClientErrors() {
+        ErrorException.setStacklessClientErrors(true);
+        ErrorException e = ErrorException.forErrorStatus(accountNotFound);
+        assertEquals(0, e.getStackTrace().length);
+        assertEquals(Status.Code.NOT_FOUND, e.getStatus().getCode());
+        assertEquals(accountNotFound, e.errorStatus());
+        assertSame(e, ErrorException.forErrorStatus(accountNotFound));
+
+        ErrorException withMessage = ErrorException.forErrorStatus(accountNotFound.withMessage("Account not found"));
+        assertEquals(0, withMessage.getStackTrace().length);
+        assertNotSame(withMessage, ErrorException.forErrorStatus(accountNotFound.withMessage("Account not found")));
+    }
+
+    @Test
+    public void stacklessModeKeepsServerErrorStackTraces() {
+        ErrorException.setStacklessClientErrors(true);
+        assertTrue(ErrorException.forErrorStatus(loginRequired).getStackTrace().length > 0);
+        assertTrue(ErrorException.fromThrowable(new IllegalStateException()).getStackTrace().length > 0);
+    }
+}
@@ -0,0 +1,67 @@
+package example;
+
+import io.grpc.Metadata;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests reading and writing error information in both metadata encodings.
+ */
+public class ErrorStatusTest {
+    private static final ErrorStatus accountNotFound = ErrorStatus.forCode(ErrorStatus.Code.accountNotFound);
+
+    @After
+    public void reset() {
+        ErrorStatus.setEncoding(ErrorStatus.Encoding.legacy);
+    }
+
+    @Test
+    public void compact() {
+        ErrorStatus.setEncoding(ErrorStatus.Encoding.compact);
+        assertEquals(Optional.of(accountNotFound), roundTrip(accountNotFound));
+        ErrorStatus withMessage = accountNotFound.withMessage("Account not found – ünïcode");
+        assertEquals(Optional.of(withMessage), roundTrip(withMessage));
+        assertEquals(Optional.of(withMessage.withMessage("")), roundTrip(withMessage.withMessage("")));
+    }
+
+    @Test
+    public void legacy() {
+        assertEquals(Optional.of(accountNotFound), roundTrip(accountNotFound));
+        ErrorStatus withMessage = accountNotFound.withMessage("Account not found");
+        assertEquals(Optional.of(withMessage), roundTrip(withMessage));
+    }
+
+    @Test
+    public void compactTrailerIsSmaller() {
+        ErrorStatus withMessage = accountNotFound.withMessage("Account not found");
+        ErrorStatus.setEncoding(ErrorStatus.Encoding.compact);
+        int compact = serializedSize(withMessage);
+        ErrorStatus.setEncoding(ErrorStatus.Encoding.legacy);
+        assertTrue(compact < serializedSize(withMessage));
+    }
+
+    @Test
+    public void noErrorStatus() {
+        assertEquals(Optional.empty(), ErrorStatus.fromMetadata(new Metadata.Trailers()));
+    }
+
+    private static Optional<ErrorStatus> roundTrip(ErrorStatus status) {
+        Metadata.Trailers trailers = new Metadata.Trailers();
+        status.addHeaders(trailers);
+        return ErrorStatus.fromMetadata(new Metadata.Trailers(trailers.serialize()));
+    }
+
+    private static int serializedSize(ErrorStatus status) {
+        Metadata.Trailers trailers = new Metadata.Trailers();
+        status.addHeaders(trailers);
+        int size = 0;
+        for (byte[] bytes : trailers.serialize()) {
+            size += bytes.length;
+        }
+        return size;
+    }
+}
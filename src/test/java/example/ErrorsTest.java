@@ -0,0 +1,135 @@
+package example;
+
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.grpc.stub.ServerCalls;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the server interceptor receives error information from handlers completing on other threads and
+ * doesn't retain it afterwards. The soak test makes 10,000 calls by default; run the full soak with
+ * -Dsoak.calls=1000000.
+ */
+public class ErrorsTest {
+    private static final int soakCalls = Integer.getInteger("soak.calls", 10_000);
+
+    private static final ErrorStatus accountNotFound =
+        ErrorStatus.forCode(ErrorStatus.Code.accountNotFound).withMessage("Account not found");
+
+    @Test
+    public void asyncHandler() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            RecordingCall call = new RecordingCall(1);
+            startCall(call, (request, responseObserver) -> executor.execute(() ->
+                Errors.handleError(ErrorException.forErrorStatus(accountNotFound), responseObserver)));
+            assertTrue(call.closed.await(5, TimeUnit.SECONDS));
+            assertEquals(Status.Code.NOT_FOUND, call.status.getCode());
+            assertNull(call.status.getCause());
+            assertEquals(accountNotFound, call.errorStatus);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void errorWithoutErrorStatus() throws Exception {
+        RecordingCall call = new RecordingCall(1);
+        startCall(call, (request, responseObserver) ->
+            Errors.handleError(Status.INVALID_ARGUMENT.asRuntimeException(), responseObserver));
+        assertTrue(call.closed.await(5, TimeUnit.SECONDS));
+        assertEquals(Status.Code.INVALID_ARGUMENT, call.status.getCode());
+        assertNull(call.errorStatus);
+    }
+
+    @Test
+    public void soak() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<WeakReference<ErrorStatus>> sampled = new ArrayList<>();
+        RecordingCall call = new RecordingCall(soakCalls);
+        try {
+            for (int i = 0; i < soakCalls; i++) {
+                ErrorStatus errorStatus = accountNotFound.withMessage(Integer.toString(i));
+                if (i % 10_000 == 0 || i >= soakCalls - 16) {
+                    sampled.add(new WeakReference<>(errorStatus));
+                }
+                startCall(call, (request, responseObserver) -> executor.execute(() ->
+                    Errors.handleError(ErrorException.forErrorStatus(errorStatus), responseObserver)));
+            }
+            assertTrue(call.closed.await(60, TimeUnit.SECONDS));
+            assertEquals(soakCalls, call.withErrorStatus.get());
+
+            // Pool threads are still alive here, so anything parked per thread would remain reachable
+            call.errorStatus = null;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (sampled.stream().anyMatch(ref -> ref.get() != null) && System.nanoTime() < deadline) {
+                System.gc();
+                Thread.sleep(50);
+            }
+            assertTrue(sampled.stream().allMatch(ref -> ref.get() == null));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void startCall(RecordingCall call, ServerCalls.UnaryRequestMethod<String, String> method) {
+        ServerInterceptor interceptor = Errors.serverInterceptor();
+        ServerCallHandler<String, String> handler = ServerCalls.asyncUnaryRequestCall(method);
+        ServerCall.Listener<String> listener =
+            interceptor.interceptCall("example/Test", call, new Metadata.Headers(), handler);
+        listener.onPayload("request");
+        listener.onHalfClose();
+    }
+
+    private static class RecordingCall extends ServerCall<String> {
+        private final CountDownLatch closed;
+        private final AtomicInteger withErrorStatus = new AtomicInteger();
+        private volatile Status status;
+        private volatile ErrorStatus errorStatus;
+
+        RecordingCall(int calls) {
+            closed = new CountDownLatch(calls);
+        }
+
+        @Override
+        public void request(int numMessages) {
+        }
+
+        @Override
+        public void sendHeaders(Metadata.Headers headers) {
+        }
+
+        @Override
+        public void sendPayload(String payload) {
+        }
+
+        @Override
+        public void close(Status status, Metadata.Trailers trailers) {
+            this.status = status;
+            errorStatus = ErrorStatus.fromMetadata(trailers).orElse(null);
+            if (errorStatus != null) {
+                withErrorStatus.incrementAndGet();
+            }
+            closed.countDown();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package example;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.protobuf.Empty;
 import io.grpc.Status;
@@ -10,8 +12,10 @@ import org.junit.Test;
 
 import java.net.InetSocketAddress;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.*;
 
@@ -28,9 +32,9 @@ public class ExampleTest {
 
     @BeforeClass
     public static void init() {
-        server = ExampleServer.forPort(8080);
+        server = ExampleServer.forPort(0);
         server.startAsync().awaitRunning();
-        client = ExampleClient.forAddress(new InetSocketAddress(8080));
+        client = ExampleClient.forAddress(new InetSocketAddress("localhost", server.port()));
     }
 
     @AfterClass
@@ -64,6 +68,11 @@ public class ExampleTest {
         }
     }
 
+    @Test
+    public void futureStubCallback() throws Exception {
+        assertCallbackError(client.generateErrorFutureStub(accountNotFound));
+    }
+
     @Test
     public void asyncStub() throws Exception {
         StreamRecorder<Empty> recorder = StreamRecorder.create();
@@ -98,6 +107,22 @@ public class ExampleTest {
         }
     }
 
+    @Test
+    public void futureUnaryCallCallback() throws Exception {
+        assertCallbackError(client.generateErrorFutureUnaryCall(accountNotFound));
+    }
+
+    @Test
+    public void completableUnaryCall() throws Exception {
+        try {
+            client.generateErrorCompletableUnaryCall(accountNotFound).get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ErrorException);
+            assertEquals(accountNotFound, ((ErrorException) e.getCause()).errorStatus());
+        }
+    }
+
     @Test
     public void asyncUnaryCall() throws Exception {
         StreamRecorder<Empty> recorder = StreamRecorder.create();
@@ -106,4 +131,41 @@ public class ExampleTest {
         assertTrue(recorder.getError() instanceof ErrorException);
         assertEquals(accountNotFound, ((ErrorException) recorder.getError()).errorStatus());
     }
+
+    private static void assertCallbackError(ListenableFuture<Empty> future) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Futures.addCallback(future, new FutureCallback<Empty>() {
+            @Override
+            public void onSuccess(Empty result) {
+                done.countDown();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                error.set(t);
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(error.get() instanceof ErrorException);
+        assertEquals(accountNotFound, ((ErrorException) error.get()).errorStatus());
+    }
+
+    @Test
+    public void pooledChannels() throws Exception {
+        for (ChannelPool.Selection selection : ChannelPool.Selection.values()) {
+            try (ExampleClient pooled = ExampleClient.newBuilder(new InetSocketAddress("localhost", server.port()))
+                .channels(3, selection).build()) {
+                for (int i = 0; i < 6; i++) {
+                    try {
+                        pooled.generateErrorBlockingUnaryCall(accountNotFound);
+                        fail();
+                    } catch (ErrorException e) {
+                        assertEquals(accountNotFound, e.errorStatus());
+                    }
+                }
+            }
+        }
+    }
 }
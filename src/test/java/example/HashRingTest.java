@@ -0,0 +1,59 @@
+package example;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests HashRing balance and that removing a backend only moves the keys it owned.
+ */
+public class HashRingTest {
+    private static final int keys = 10_000;
+
+    @Test
+    public void balanced() {
+        HashRing ring = HashRing.create(addresses(4), 100);
+        int[] owned = new int[4];
+        for (int i = 0; i < keys; i++) {
+            owned[ring.owner("account-" + i)]++;
+        }
+        for (int count : owned) {
+            assertTrue("owned " + count, count > keys / 8 && count < keys / 2);
+        }
+    }
+
+    @Test
+    public void minimalRebalancing() {
+        HashRing four = HashRing.create(addresses(4), 100);
+        HashRing three = HashRing.create(addresses(3), 100);
+        for (int i = 0; i < keys; i++) {
+            String key = "account-" + i;
+            int owner = four.owner(key);
+            if (owner != 3) {
+                assertEquals(key, owner, three.owner(key));
+            }
+        }
+    }
+
+    @Test
+    public void selectSkipsRejected() {
+        HashRing ring = HashRing.create(addresses(4), 100);
+        int owner = ring.owner("account-1");
+        int next = ring.select("account-1", i -> i != owner);
+        assertNotEquals(owner, next);
+        assertEquals(owner, ring.select("account-1", i -> false));
+    }
+
+    private static List<SocketAddress> addresses(int n) {
+        List<SocketAddress> addresses = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            addresses.add(InetSocketAddress.createUnresolved("backend-" + i, 8080));
+        }
+        return addresses;
+    }
+}
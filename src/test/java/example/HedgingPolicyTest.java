@@ -0,0 +1,119 @@
+package example;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests HedgingPolicy against a server which delays selected calls, so a hedge wins over a slow first copy while a
+ * prompt accountNotFound answer is final.
+ */
+public class HedgingPolicyTest {
+    private static final ErrorStatus accountNotFound =
+        ErrorStatus.forCode(ErrorStatus.Code.accountNotFound).withMessage("Account not found");
+
+    private final AtomicInteger attempts = new AtomicInteger();
+    private final AtomicInteger slow = new AtomicInteger();
+    private ExampleServer server;
+    private ExampleClient client;
+
+    @Before
+    public void init() {
+        server = ExampleServer.newBuilder(0).interceptors(new SlowInjector()).build();
+        server.startAsync().awaitRunning();
+        client = ExampleClient.newBuilder(new InetSocketAddress("localhost", server.port()))
+            .hedgingPolicy(HedgingPolicy.newBuilder().delay(50, TimeUnit.MILLISECONDS).build())
+            .build();
+    }
+
+    @After
+    public void destroy() {
+        client.close();
+        server.stopAsync().awaitTerminated();
+    }
+
+    @Test
+    public void promptAnswerNotHedged() throws Exception {
+        assertNotFound();
+        Thread.sleep(100);
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    public void slowCallHedged() throws Exception {
+        slow.set(1);
+        long start = System.nanoTime();
+        assertNotFound();
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void adaptiveDelay() {
+        HedgingPolicy policy = HedgingPolicy.newBuilder().adaptiveDelay(95, 10, TimeUnit.MILLISECONDS).build();
+        HedgingPolicy.LatencyTracker tracker = new HedgingPolicy.LatencyTracker();
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(10), policy.delayNanos("example/Method"));
+        assertEquals(-1, tracker.percentile(95));
+        for (int i = 1; i <= 63; i++) {
+            tracker.record(i);
+        }
+        assertEquals(-1, tracker.percentile(95));
+        for (int i = 64; i <= 100; i++) {
+            tracker.record(i);
+        }
+        assertEquals(95, tracker.percentile(95));
+        assertEquals(50, tracker.percentile(50));
+        // The snapshot is only rebuilt every 32 samples
+        for (int i = 0; i < 16; i++) {
+            tracker.record(1000);
+        }
+        assertEquals(95, tracker.percentile(95));
+        for (int i = 0; i < 16; i++) {
+            tracker.record(1000);
+        }
+        assertEquals(1000, tracker.percentile(95));
+    }
+
+    private void assertNotFound() throws InterruptedException {
+        try {
+            client.generateErrorFutureUnaryCall(accountNotFound).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ErrorException);
+            assertEquals(accountNotFound, ((ErrorException) e.getCause()).errorStatus());
+        }
+    }
+
+    /**
+     * Holds the response of a call for 5 seconds while slow calls remain.
+     */
+    private class SlowInjector implements ServerInterceptor {
+        @Override
+        public <ReqT, ResT> ServerCall.Listener<ReqT> interceptCall(
+            String method, ServerCall<ResT> call, Metadata.Headers headers, ServerCallHandler<ReqT, ResT> next) {
+            attempts.incrementAndGet();
+            if (slow.getAndUpdate(n -> Math.max(0, n - 1)) == 0) {
+                return next.startCall(method, call, headers);
+            }
+            return next.startCall(method, new ForwardingServerCall.SimpleForwardingServerCall<ResT>(call) {
+                @Override
+                public void close(Status status, Metadata.Trailers trailers) {
+                    RetryPolicy.defaultScheduler.schedule(() -> super.close(status, trailers), 5, TimeUnit.SECONDS);
+                }
+            }, headers);
+        }
+    }
+}
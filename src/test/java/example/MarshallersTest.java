@@ -0,0 +1,58 @@
+package example;
+
+import com.google.common.base.Charsets;
+import io.grpc.Metadata;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the metadata marshallers.
+ */
+public class MarshallersTest {
+    private static final Metadata.BinaryMarshaller<ErrorStatus.Code> enumMarshaller =
+        Marshallers.enumMarshaller(ErrorStatus.Code.class, ErrorStatus.Code.unknown);
+
+    @Test
+    public void enumRoundTrip() {
+        for (ErrorStatus.Code code : ErrorStatus.Code.values()) {
+            byte[] bytes = enumMarshaller.toBytes(code);
+            assertArrayEquals(code.name().getBytes(Charsets.UTF_8), bytes);
+            assertEquals(code, enumMarshaller.parseBytes(bytes));
+        }
+    }
+
+    @Test
+    public void enumDefault() {
+        assertEquals(ErrorStatus.Code.unknown, enumMarshaller.parseBytes("accountDisabled".getBytes(Charsets.UTF_8)));
+        assertEquals(ErrorStatus.Code.unknown, enumMarshaller.parseBytes("accountNotFoundX".getBytes(Charsets.UTF_8)));
+        assertEquals(ErrorStatus.Code.unknown, enumMarshaller.parseBytes(new byte[0]));
+        assertEquals(ErrorStatus.Code.unknown, enumMarshaller.parseBytes(new byte[] {(byte) 0xc3, 0x28}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void enumWithoutDefault() {
+        Marshallers.enumMarshaller(ErrorStatus.Code.class, null).parseBytes("bogus".getBytes(Charsets.UTF_8));
+    }
+
+    @Test
+    public void utf8() {
+        Metadata.BinaryMarshaller<String> marshaller = Marshallers.utf8Marshaller();
+        for (String s : new String[] {"", "Account not found", "Compte introuvable – é", "\uD83D\uDE00"}) {
+            assertEquals(s, marshaller.parseBytes(marshaller.toBytes(s)));
+        }
+    }
+
+    @Test
+    public void internedUtf8() {
+        Marshallers.Utf8Marshaller marshaller = Marshallers.internedUtf8Marshaller(16);
+        byte[] bytes = "Account not found".getBytes(Charsets.UTF_8);
+        String first = marshaller.parseBytes(bytes);
+        assertEquals("Account not found", first);
+        assertSame(first, marshaller.parseBytes(bytes.clone()));
+        assertEquals("Compte introuvable – é", marshaller.parseBytes(marshaller.toBytes("Compte introuvable – é")));
+
+        byte[] framed = "xxAccount not foundyy".getBytes(Charsets.UTF_8);
+        assertSame(first, marshaller.parseBytes(framed, 2, bytes.length));
+    }
+}
@@ -0,0 +1,113 @@
+package example;
+
+import com.google.common.base.Ticker;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests NotFoundCache against a server which counts the calls it receives.
+ */
+public class NotFoundCacheTest {
+    private static final ErrorStatus accountNotFound =
+        ErrorStatus.forCode(ErrorStatus.Code.accountNotFound).withMessage("Account not found");
+
+    private final AtomicInteger received = new AtomicInteger();
+    private final AtomicLong now = new AtomicLong();
+    private NotFoundCache cache;
+    private ExampleServer server;
+    private ExampleClient client;
+
+    @Before
+    public void init() {
+        server = ExampleServer.newBuilder(0).interceptors(new Counter()).build();
+        server.startAsync().awaitRunning();
+        cache = NotFoundCache.newBuilder()
+            .ttl(10, TimeUnit.SECONDS)
+            .ticker(new Ticker() {
+                @Override
+                public long read() {
+                    return now.get();
+                }
+            })
+            .build();
+        client = ExampleClient.newBuilder(new InetSocketAddress("localhost", server.port()))
+            .notFoundCache(cache)
+            .build();
+    }
+
+    @After
+    public void destroy() {
+        client.close();
+        server.stopAsync().awaitTerminated();
+    }
+
+    @Test
+    public void answersRepeatsLocally() {
+        for (int i = 0; i < 10; i++) {
+            ErrorException e = call(accountNotFound);
+            assertEquals(Status.Code.NOT_FOUND, e.getStatus().getCode());
+            assertEquals(accountNotFound, e.errorStatus());
+        }
+        assertEquals(1, received.get());
+        assertEquals(9, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void keyedByRequest() {
+        call(accountNotFound);
+        call(accountNotFound.withMessage("Other account"));
+        assertEquals(2, received.get());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void expires() {
+        call(accountNotFound);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(11));
+        call(accountNotFound);
+        assertEquals(2, received.get());
+        assertEquals(0, cache.hits());
+    }
+
+    @Test
+    public void serverErrorsNotCached() {
+        ErrorStatus loginRequired = ErrorStatus.forCode(ErrorStatus.Code.loginRequired);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Status.Code.INTERNAL, call(loginRequired).getStatus().getCode());
+        }
+        assertEquals(5, received.get());
+        assertEquals(0, cache.size());
+    }
+
+    private ErrorException call(ErrorStatus errorStatus) {
+        try {
+            client.generateErrorBlockingUnaryCall(errorStatus);
+            throw new AssertionError("expected error");
+        } catch (ErrorException e) {
+            return e;
+        }
+    }
+
+    private class Counter implements ServerInterceptor {
+        @Override
+        public <ReqT, ResT> ServerCall.Listener<ReqT> interceptCall(
+            String method, ServerCall<ResT> call, Metadata.Headers headers, ServerCallHandler<ReqT, ResT> next) {
+            received.incrementAndGet();
+            return next.startCall(method, call, headers);
+        }
+    }
+}
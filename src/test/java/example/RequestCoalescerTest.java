@@ -0,0 +1,247 @@
+package example;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.protobuf.Empty;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests RequestCoalescer against a server which holds its responses until released.
+ */
+public class RequestCoalescerTest {
+    private static final ErrorStatus accountNotFound =
+        ErrorStatus.forCode(ErrorStatus.Code.accountNotFound).withMessage("Account not found");
+
+    private final AtomicInteger received = new AtomicInteger();
+    private final Queue<Runnable> held = new ConcurrentLinkedQueue<>();
+    private volatile boolean holding = true;
+    private RequestCoalescer coalescer;
+    private ExampleServer server;
+    private ExampleClient client;
+
+    @Before
+    public void init() {
+        server = ExampleServer.newBuilder(0).interceptors(new Holder()).build();
+        server.startAsync().awaitRunning();
+        coalescer = RequestCoalescer.create();
+        client = ExampleClient.newBuilder(new InetSocketAddress("localhost", server.port()))
+            .requestCoalescer(coalescer)
+            .build();
+    }
+
+    @After
+    public void destroy() {
+        client.close();
+        server.stopAsync().awaitTerminated();
+    }
+
+    @Test
+    public void coalescesIdenticalCalls() throws Exception {
+        List<ListenableFuture<Empty>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(client.generateErrorFutureUnaryCall(accountNotFound));
+        }
+        release(1);
+        for (ListenableFuture<Empty> future : futures) {
+            assertNotFound(future);
+        }
+        assertEquals(1, received.get());
+        assertEquals(9, coalescer.coalesced());
+        assertEquals(0, coalescer.inFlight());
+    }
+
+    @Test
+    public void distinctRequestsNotCoalesced() throws Exception {
+        ListenableFuture<Empty> first = client.generateErrorFutureUnaryCall(accountNotFound);
+        ListenableFuture<Empty> second = client.generateErrorFutureUnaryCall(accountNotFound.withMessage("Other"));
+        release(2);
+        assertNotFound(first);
+        assertNotFound(second);
+        assertEquals(2, received.get());
+        assertEquals(0, coalescer.coalesced());
+    }
+
+    @Test
+    public void cancellingOneWaiterKeepsSharedCall() throws Exception {
+        ListenableFuture<Empty> cancelled = client.generateErrorFutureUnaryCall(accountNotFound);
+        ListenableFuture<Empty> waiting = client.generateErrorFutureUnaryCall(accountNotFound);
+        cancelled.cancel(true);
+        release(1);
+        assertTrue(cancelled.isCancelled());
+        assertNotFound(waiting);
+        assertEquals(1, received.get());
+    }
+
+    @Test
+    public void cancellingAllWaitersCancelsSharedCall() throws Exception {
+        client.generateErrorFutureUnaryCall(accountNotFound).cancel(true);
+        assertEquals(0, coalescer.inFlight());
+        release(0);
+        assertNotFound(client.generateErrorFutureUnaryCall(accountNotFound));
+        assertEquals(0, coalescer.coalesced());
+    }
+
+    @Test
+    public void coalescesBurstWithSameTimeout() {
+        PendingChannel channel = new PendingChannel();
+        pendingCall(channel, CallOptions.DEFAULT.withDeadlineAfter(10, TimeUnit.SECONDS));
+        pendingCall(channel, CallOptions.DEFAULT.withDeadlineAfter(10, TimeUnit.SECONDS));
+        assertEquals(1, channel.calls.get());
+        assertEquals(1, coalescer.coalesced());
+    }
+
+    @Test
+    public void laterDeadlinesNotCoalesced() {
+        PendingChannel channel = new PendingChannel();
+        pendingCall(channel, CallOptions.DEFAULT.withDeadlineAfter(1, TimeUnit.SECONDS));
+        pendingCall(channel, CallOptions.DEFAULT.withDeadlineAfter(10, TimeUnit.SECONDS));
+        pendingCall(channel, CallOptions.DEFAULT);
+        assertEquals(3, channel.calls.get());
+        assertEquals(0, coalescer.coalesced());
+    }
+
+    @Test
+    public void earlierDeadlineEnforcedForWaiter() throws Exception {
+        PendingChannel channel = new PendingChannel();
+        ListenableFuture<Empty> leader = pendingCall(channel, CallOptions.DEFAULT);
+        ListenableFuture<Empty> waiter =
+            pendingCall(channel, CallOptions.DEFAULT.withDeadlineAfter(50, TimeUnit.MILLISECONDS));
+        assertEquals(1, coalescer.coalesced());
+        try {
+            waiter.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals(Status.Code.DEADLINE_EXCEEDED, ((ErrorException) e.getCause()).getStatus().getCode());
+        }
+        assertFalse(leader.isDone());
+        assertEquals(1, channel.calls.get());
+    }
+
+    @Test
+    public void failedStartClosesWaiters() throws Exception {
+        ListenableFuture<Empty> future = pendingCall(new Channel() {
+            @Override
+            public <ReqT, ResT> ClientCall<ReqT, ResT> newCall(MethodDescriptor<ReqT, ResT> method,
+                                                               CallOptions callOptions) {
+                throw new IllegalStateException("Channel shut down");
+            }
+        }, CallOptions.DEFAULT);
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals(Status.Code.INTERNAL, ((ErrorException) e.getCause()).getStatus().getCode());
+        }
+        assertEquals(0, coalescer.inFlight());
+    }
+
+    private ListenableFuture<Empty> pendingCall(Channel channel, CallOptions callOptions) {
+        ClientCall<Example.GenerateErrorRequest, Empty> call = coalescer.interceptor()
+            .interceptCall(ExampleServiceGrpc.METHOD_GENERATE_ERROR, callOptions, channel);
+        return UnaryCalls.futureUnaryCall(call, Example.GenerateErrorRequest.newBuilder().build());
+    }
+
+    /**
+     * Waits until the server holds at least the given number of responses, then sends them and stops holding.
+     */
+    private void release(int responses) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (held.size() < responses && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(held.size() >= responses);
+        holding = false;
+        Runnable close;
+        while ((close = held.poll()) != null) {
+            close.run();
+        }
+    }
+
+    private void assertNotFound(ListenableFuture<Empty> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            ErrorException error = (ErrorException) e.getCause();
+            assertEquals(Status.Code.NOT_FOUND, error.getStatus().getCode());
+            assertEquals(accountNotFound, error.errorStatus());
+        }
+    }
+
+    /**
+     * Channel which counts its calls, none of which complete.
+     */
+    private static class PendingChannel extends Channel {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public <ReqT, ResT> ClientCall<ReqT, ResT> newCall(MethodDescriptor<ReqT, ResT> method,
+                                                           CallOptions callOptions) {
+            calls.incrementAndGet();
+            return new ClientCall<ReqT, ResT>() {
+                @Override
+                public void start(Listener<ResT> listener, Metadata.Headers headers) {
+                }
+
+                @Override
+                public void request(int numMessages) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+
+                @Override
+                public void halfClose() {
+                }
+
+                @Override
+                public void sendPayload(ReqT payload) {
+                }
+            };
+        }
+    }
+
+    /**
+     * Counts calls and holds their responses until released.
+     */
+    private class Holder implements ServerInterceptor {
+        @Override
+        public <ReqT, ResT> ServerCall.Listener<ReqT> interceptCall(
+            String method, ServerCall<ResT> call, Metadata.Headers headers, ServerCallHandler<ReqT, ResT> next) {
+            received.incrementAndGet();
+            return next.startCall(method, new ForwardingServerCall.SimpleForwardingServerCall<ResT>(call) {
+                @Override
+                public void close(Status status, Metadata.Trailers trailers) {
+                    if (holding) {
+                        held.add(() -> super.close(status, trailers));
+                    } else {
+                        super.close(status, trailers);
+                    }
+                }
+            }, headers);
+        }
+    }
+}
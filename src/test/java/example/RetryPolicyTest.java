@@ -0,0 +1,128 @@
+package example;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests RetryPolicy decisions and, with faults injected by a server interceptor, that retries recover from transient
+ * failures while load amplification during an outage stays within the retry budget.
+ */
+public class RetryPolicyTest {
+    private static final int calls = 500;
+    private static final double ratio = 0.1;
+    private static final int burst = 10;
+    private static final ErrorStatus accountNotFound =
+        ErrorStatus.forCode(ErrorStatus.Code.accountNotFound).withMessage("Account not found");
+
+    private final AtomicInteger attempts = new AtomicInteger();
+    private final AtomicInteger faults = new AtomicInteger();
+    private ExampleServer server;
+    private ExampleClient client;
+
+    @Before
+    public void init() {
+        server = ExampleServer.newBuilder(0).interceptors(new FaultInjector()).build();
+        server.startAsync().awaitRunning();
+        RetryPolicy policy = RetryPolicy.newBuilder()
+            .backoff(1, 5, TimeUnit.MILLISECONDS, 2)
+            .budget(RetryBudget.create(ratio, burst))
+            .build();
+        client = ExampleClient.newBuilder(new InetSocketAddress("localhost", server.port()))
+            .retryPolicy(policy)
+            .build();
+    }
+
+    @After
+    public void destroy() {
+        client.close();
+        server.stopAsync().awaitTerminated();
+    }
+
+    @Test
+    public void retryable() {
+        RetryPolicy policy = RetryPolicy.newBuilder().build();
+        assertTrue(policy.isRetryable(Status.UNAVAILABLE, null));
+        assertTrue(policy.isRetryable(Status.INTERNAL, null));
+        assertFalse(policy.isRetryable(Status.UNKNOWN, null));
+        assertTrue(policy.isRetryable(Status.INTERNAL, ErrorStatus.forCode(ErrorStatus.Code.unknown)));
+        assertFalse(policy.isRetryable(Status.INTERNAL, ErrorStatus.forCode(ErrorStatus.Code.loginRequired)));
+        assertFalse(policy.isRetryable(Status.NOT_FOUND, accountNotFound));
+        assertFalse(policy.isRetryable(Status.CANCELLED, null));
+        assertFalse(policy.isRetryable(Status.OK, null));
+    }
+
+    @Test
+    public void clientErrorNotRetried() {
+        for (int i = 0; i < 10; i++) {
+            assertNotFound();
+        }
+        assertEquals(10, attempts.get());
+    }
+
+    @Test
+    public void transientFailureRetried() {
+        faults.set(1);
+        assertNotFound();
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void outageAmplificationBounded() {
+        faults.set(Integer.MAX_VALUE);
+        for (int i = 0; i < calls; i++) {
+            try {
+                client.generateErrorBlockingUnaryCall(accountNotFound);
+                fail();
+            } catch (ErrorException e) {
+                assertEquals(Status.Code.UNAVAILABLE, e.getStatus().getCode());
+            }
+        }
+        int retries = attempts.get() - calls;
+        assertTrue("retries " + retries, retries <= calls * ratio + burst);
+        assertTrue("retries " + retries, retries >= burst);
+    }
+
+    private void assertNotFound() {
+        try {
+            client.generateErrorBlockingUnaryCall(accountNotFound);
+            fail();
+        } catch (ErrorException e) {
+            assertEquals(Status.Code.NOT_FOUND, e.getStatus().getCode());
+            assertEquals(accountNotFound, e.errorStatus());
+        }
+    }
+
+    /**
+     * Fails calls with UNAVAILABLE, discarding the service's response, while faults remain.
+     */
+    private class FaultInjector implements ServerInterceptor {
+        @Override
+        public <ReqT, ResT> ServerCall.Listener<ReqT> interceptCall(
+            String method, ServerCall<ResT> call, Metadata.Headers headers, ServerCallHandler<ReqT, ResT> next) {
+            attempts.incrementAndGet();
+            boolean fault = faults.getAndUpdate(n -> Math.max(0, n - 1)) > 0;
+            if (!fault) {
+                return next.startCall(method, call, headers);
+            }
+            return next.startCall(method, new ForwardingServerCall.SimpleForwardingServerCall<ResT>(call) {
+                @Override
+                public void close(Status status, Metadata.Trailers trailers) {
+                    super.close(Status.UNAVAILABLE.withDescription("Injected fault"), new Metadata.Trailers());
+                }
+            }, headers);
+        }
+    }
+}
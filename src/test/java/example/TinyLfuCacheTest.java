@@ -0,0 +1,50 @@
+package example;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests TinyLfuCache bounds and that a scan of one-off keys doesn't flush frequently used ones.
+ */
+public class TinyLfuCacheTest {
+    @Test
+    public void bounded() {
+        TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(100);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, i);
+        }
+        assertEquals(100, cache.size());
+        assertEquals(900, cache.evictions());
+    }
+
+    @Test
+    public void scanResistant() {
+        TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(100);
+        int scanned = 1000;
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 50; i++) {
+                if (cache.get(i) == null) {
+                    cache.put(i, i);
+                }
+            }
+            // Twice the cache size of one-off keys, which would flush an LRU cache every round
+            for (int i = 0; i < 200; i++, scanned++) {
+                cache.put(scanned, scanned);
+            }
+        }
+        for (int i = 0; i < 50; i++) {
+            assertEquals(Integer.valueOf(i), cache.get(i));
+        }
+    }
+
+    @Test
+    public void removeOnlyCurrentValue() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(10);
+        cache.put("a", "1");
+        cache.remove("a", "2");
+        assertEquals("1", cache.get("a"));
+        cache.remove("a", "1");
+        assertNull(cache.get("a"));
+    }
+}
@@ -0,0 +1,117 @@
+package example;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import io.grpc.ClientCall;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.stub.ClientCalls;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests UnaryCalls against a call which fails synchronously, so everything a call allocates is allocated on the
+ * test thread and can be measured.
+ */
+public class UnaryCallsTest {
+    private static final int calls = 20_000;
+    private static final ErrorStatus accountNotFound =
+        ErrorStatus.forCode(ErrorStatus.Code.accountNotFound).withMessage("Account not found");
+
+    @Before
+    public void init() {
+        // Keeps stack traces, which neither path controls the size of, out of the allocation comparison
+        ErrorException.setStacklessClientErrors(true);
+    }
+
+    @After
+    public void reset() {
+        ErrorException.setStacklessClientErrors(false);
+    }
+
+    @Test
+    public void future() throws Exception {
+        try {
+            UnaryCalls.futureUnaryCall(new FailingCall(), "request").get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ErrorException);
+            assertEquals(accountNotFound, ((ErrorException) e.getCause()).errorStatus());
+        }
+    }
+
+    @Test
+    public void blocking() {
+        try {
+            UnaryCalls.blockingUnaryCall(new FailingCall(), "request");
+            fail();
+        } catch (ErrorException e) {
+            assertEquals(Status.Code.NOT_FOUND, e.getStatus().getCode());
+            assertEquals(accountNotFound, e.errorStatus());
+        }
+    }
+
+    @Test
+    public void allocatesLessThanCapturingCall() throws Exception {
+        long fused = allocatedPerCall(() -> UnaryCalls.futureUnaryCall(new FailingCall(), "request"));
+        long capturing = allocatedPerCall(() -> {
+            AtomicReference<ErrorStatus> status = new AtomicReference<>();
+            ListenableFuture<String> future =
+                ClientCalls.futureUnaryCall(Errors.capturingCall(new FailingCall(), status::set), "request");
+            return Errors.futureWithStatus(status::get, future);
+        });
+        assertTrue("fused " + fused + " bytes, capturing " + capturing + " bytes", fused < capturing);
+    }
+
+    private static long allocatedPerCall(Supplier<ListenableFuture<String>> call) throws Exception {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < calls; i++) {
+            call.get();
+        }
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < calls; i++) {
+            call.get();
+        }
+        return (threads.getThreadAllocatedBytes(threadId) - before) / calls;
+    }
+
+    /**
+     * Call which fails with accountNotFound as soon as it's half closed.
+     */
+    private static class FailingCall extends ClientCall<String, String> {
+        private Listener<String> listener;
+
+        @Override
+        public void start(Listener<String> listener, Metadata.Headers headers) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void request(int numMessages) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public void halfClose() {
+            Metadata.Trailers trailers = new Metadata.Trailers();
+            accountNotFound.addHeaders(trailers);
+            listener.onClose(Status.NOT_FOUND.withDescription("Account not found"), trailers);
+        }
+
+        @Override
+        public void sendPayload(String payload) {
+        }
+    }
+}